@@ -0,0 +1,85 @@
+package com.mediscreen.patientmicroservice.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.mediscreen.patientmicroservice.domain.Patient;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization time of Patient with each format of the content negotiation, for one patient and for a large list.
+ * The encoded sizes are printed once per format in the setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PatientFormatBenchmark {
+    @Param({"json", "smile", "cbor"})
+    public String format;
+
+    @Param({"1000"})
+    public int listSize;
+
+    private ObjectWriter patientWriter;
+    private ObjectReader patientReader;
+    private ObjectWriter listWriter;
+    private ObjectReader listReader;
+    private Patient patient;
+    private byte[] patientBytes;
+    private List<Patient> patients;
+    private byte[] patientListBytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        Jackson2ObjectMapperBuilder builder = switch (format) {
+            case "smile" -> Jackson2ObjectMapperBuilder.smile();
+            case "cbor" -> Jackson2ObjectMapperBuilder.cbor();
+            default -> Jackson2ObjectMapperBuilder.json();
+        };
+        ObjectMapper objectMapper = builder
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        patientWriter = objectMapper.writerFor(Patient.class);
+        patientReader = objectMapper.readerFor(Patient.class);
+        listWriter = objectMapper.writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, Patient.class));
+        listReader = objectMapper.readerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, Patient.class));
+
+        LocalDate dateOfBirth = LocalDate.of(1980, 4, 12);
+        patient = new Patient(1L, "LastName", "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262-9599");
+        patients = new ArrayList<>(listSize);
+        for (long i = 0; i < listSize; i++) {
+            patients.add(new Patient(i, "LastName" + i, "FirstName" + i, dateOfBirth.plusDays(i), i % 2 == 0 ? "F" : "M", "21 Rue de Paris", "121-262-9599"));
+        }
+        patientBytes = patientWriter.writeValueAsBytes(patient);
+        patientListBytes = listWriter.writeValueAsBytes(patients);
+        System.out.printf("%n%s: patient %d bytes, list of %d patients %d bytes%n", format, patientBytes.length, listSize, patientListBytes.length);
+    }
+
+    @Benchmark
+    public byte[] serializePatient() throws IOException {
+        return patientWriter.writeValueAsBytes(patient);
+    }
+
+    @Benchmark
+    public Patient deserializePatient() throws IOException {
+        return patientReader.readValue(patientBytes);
+    }
+
+    @Benchmark
+    public byte[] serializePatientList() throws IOException {
+        return listWriter.writeValueAsBytes(patients);
+    }
+
+    @Benchmark
+    public List<Patient> deserializePatientList() throws IOException {
+        return listReader.readValue(patientListBytes);
+    }
+}
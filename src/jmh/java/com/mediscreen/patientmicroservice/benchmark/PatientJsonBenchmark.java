@@ -0,0 +1,66 @@
+package com.mediscreen.patientmicroservice.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.mediscreen.patientmicroservice.domain.Patient;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the Jackson (de)serialization of Patient, with the ObjectMapper settings Spring Boot applies.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PatientJsonBenchmark {
+    @Param({"1000"})
+    public int listSize;
+
+    private ObjectWriter patientWriter;
+    private ObjectReader patientReader;
+    private ObjectWriter listWriter;
+    private Patient patient;
+    private byte[] patientJson;
+    private List<Patient> patients;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        patientWriter = objectMapper.writerFor(Patient.class);
+        patientReader = objectMapper.readerFor(Patient.class);
+        listWriter = objectMapper.writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, Patient.class));
+
+        LocalDate dateOfBirth = LocalDate.of(1980, 4, 12);
+        patient = new Patient(1L, "LastName", "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262-9599");
+        patientJson = patientWriter.writeValueAsBytes(patient);
+        patients = new ArrayList<>(listSize);
+        for (long i = 0; i < listSize; i++) {
+            patients.add(new Patient(i, "LastName" + i, "FirstName" + i, dateOfBirth.plusDays(i), i % 2 == 0 ? "F" : "M", "21 Rue de Paris", "121-262-9599"));
+        }
+    }
+
+    @Benchmark
+    public byte[] serializePatient() throws IOException {
+        return patientWriter.writeValueAsBytes(patient);
+    }
+
+    @Benchmark
+    public Patient deserializePatient() throws IOException {
+        return patientReader.readValue(patientJson);
+    }
+
+    @Benchmark
+    public byte[] serializePatientList() throws IOException {
+        return listWriter.writeValueAsBytes(patients);
+    }
+}
@@ -0,0 +1,79 @@
+package com.mediscreen.patientmicroservice.benchmark;
+
+import com.mediscreen.patientmicroservice.PatientMicroserviceApplication;
+import com.mediscreen.patientmicroservice.domain.Patient;
+import com.mediscreen.patientmicroservice.service.PatientService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the PatientService methods against the H2 database of the h2-test profile.
+ * A cache maximum size of 0 measures the database path, a large one the cached path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PatientServiceBenchmark {
+    @Param({"1000"})
+    public int patientCount;
+
+    @Param({"0", "10000"})
+    public String cacheMaximumSize;
+
+    private ConfigurableApplicationContext context;
+    private PatientService patientService;
+    private long firstId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(PatientMicroserviceApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("h2-test")
+                .properties(
+                        "spring.jpa.show-sql=false",
+                        "logging.level.root=WARN",
+                        "patient.cache.maximum-size=" + cacheMaximumSize)
+                .run();
+        patientService = context.getBean(PatientService.class);
+
+        LocalDate dateOfBirth = LocalDate.of(1980, 4, 12);
+        List<Patient> patients = new ArrayList<>(patientCount);
+        for (int i = 0; i < patientCount; i++) {
+            patients.add(new Patient("LastName" + i, "FirstName", dateOfBirth.plusDays(i), i % 2 == 0 ? "F" : "M", "21 Rue de Paris", "121-262-9599"));
+        }
+        firstId = patientService.addPatients(patients).get(0).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Patient getPatientById() {
+        return patientService.getPatientById(firstId + ThreadLocalRandom.current().nextInt(patientCount));
+    }
+
+    @Benchmark
+    public Patient getPatientByLastName() {
+        return patientService.getPatientByLastName("LastName" + ThreadLocalRandom.current().nextInt(patientCount));
+    }
+
+    @Benchmark
+    public List<Patient> getPatientsAfter() {
+        return patientService.getPatientsAfter(firstId + ThreadLocalRandom.current().nextInt(patientCount), 50);
+    }
+
+    @Benchmark
+    public List<Patient> getPatients() {
+        return patientService.getPatients();
+    }
+}
@@ -0,0 +1,49 @@
+package com.mediscreen.patientmicroservice.benchmark;
+
+import com.mediscreen.patientmicroservice.domain.Patient;
+import org.openjdk.jmh.annotations.*;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import javax.validation.ValidatorFactory;
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the Bean Validation constraints (regex, size, past date) declared on Patient.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PatientValidationBenchmark {
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+    private Patient validPatient;
+    private Patient invalidPatient;
+
+    @Setup
+    public void setUp() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+        LocalDate dateOfBirth = LocalDate.of(1980, 4, 12);
+        validPatient = new Patient("LastName", "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262-9599");
+        invalidPatient = new Patient("lastName", "F", dateOfBirth, "FF", "Paris", "121-262");
+    }
+
+    @TearDown
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<Patient>> validateValidPatient() {
+        return validator.validate(validPatient);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<Patient>> validateInvalidPatient() {
+        return validator.validate(invalidPatient);
+    }
+}
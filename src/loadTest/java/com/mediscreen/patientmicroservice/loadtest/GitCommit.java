@@ -0,0 +1,28 @@
+package com.mediscreen.patientmicroservice.loadtest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Short hash of the checked out commit, so reports of successive commits can be told apart.
+ */
+final class GitCommit {
+    private GitCommit() {
+    }
+
+    static String current() {
+        try {
+            Process process = new ProcessBuilder("git", "rev-parse", "--short", "HEAD").redirectErrorStream(true).start();
+            String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+            if (process.waitFor(5, TimeUnit.SECONDS) && process.exitValue() == 0 && !output.isEmpty()) {
+                return output;
+            }
+        } catch (IOException e) {
+            // not a git checkout, or git not installed
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "unknown";
+    }
+}
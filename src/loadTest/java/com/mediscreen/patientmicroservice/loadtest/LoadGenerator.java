@@ -0,0 +1,89 @@
+package com.mediscreen.patientmicroservice.loadtest;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model load generator: request i is due at start + i / rate, whatever the previous response times.
+ * Workers take the next due request, wait for its time, send it and record its latency from the due time,
+ * so requests delayed behind a slow server are measured as slow instead of being silently not sent
+ * (coordinated omission).
+ */
+class LoadGenerator {
+    private final LoadTestSettings settings;
+    private final HttpClient httpClient;
+    private final Workload workload;
+
+    LoadGenerator(LoadTestSettings settings, String baseUrl) {
+        this.settings = settings;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newCachedThreadPool())
+                .build();
+        this.workload = new Workload(baseUrl, httpClient, settings.mix());
+    }
+
+    LoadReport run() throws IOException, InterruptedException {
+        System.out.printf("Seeding %d patients%n", settings.patients());
+        workload.seed(settings.patients());
+        System.out.printf("Warm-up: %d s at %d req/s%n", settings.warmupSeconds(), settings.rate());
+        runPhase(settings.warmupSeconds());
+        System.out.printf("Measure: %d s at %d req/s, %d threads%n", settings.durationSeconds(), settings.rate(), settings.threads());
+        long start = System.nanoTime();
+        Map<Operation, OperationStats> stats = runPhase(settings.durationSeconds());
+        return new LoadReport(settings, stats, System.nanoTime() - start);
+    }
+
+    private Map<Operation, OperationStats> runPhase(int seconds) throws InterruptedException {
+        Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+        settings.mix().keySet().forEach(operation -> stats.put(operation, new OperationStats()));
+        long requests = (long) settings.rate() * seconds;
+        double intervalNanos = TimeUnit.SECONDS.toNanos(1) / (double) settings.rate();
+        AtomicLong next = new AtomicLong();
+        long start = System.nanoTime();
+
+        ExecutorService workers = Executors.newFixedThreadPool(settings.threads());
+        for (int i = 0; i < settings.threads(); i++) {
+            workers.execute(() -> {
+                for (long request = next.getAndIncrement(); request < requests; request = next.getAndIncrement()) {
+                    long intendedStart = start + (long) (request * intervalNanos);
+                    long wait = intendedStart - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    Operation operation = workload.nextOperation();
+                    long actualStart = System.nanoTime();
+                    boolean success = send(operation.request(workload));
+                    stats.get(operation).record(intendedStart, actualStart, System.nanoTime(), success);
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(seconds + 60L, TimeUnit.SECONDS);
+        return stats;
+    }
+
+    /**
+     * @return whether the response status is 2xx, a failed request is timed like the others
+     */
+    private boolean send(HttpRequest request) {
+        try {
+            HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+            return response.statusCode() / 100 == 2;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
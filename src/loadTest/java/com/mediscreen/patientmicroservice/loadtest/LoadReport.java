@@ -0,0 +1,84 @@
+package com.mediscreen.patientmicroservice.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reports of a run, in the report directory:
+ * <ul>
+ *     <li>history.csv, one line per operation and run, appended so that commits can be compared;</li>
+ *     <li>label-timestamp/operation.hgrm, the full response time distribution of each operation in milliseconds,
+ *     to plot with the HdrHistogram plotter.</li>
+ * </ul>
+ */
+class LoadReport {
+    private static final String HEADER = "label,timestamp,operation,rate,threads,count,errors,throughput,p50_ms,p90_ms,p99_ms,p99_9_ms,max_ms,service_p99_ms";
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final LoadTestSettings settings;
+    private final Map<Operation, OperationStats> stats;
+    private final long elapsedNanos;
+    private final String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+
+    LoadReport(LoadTestSettings settings, Map<Operation, OperationStats> stats, long elapsedNanos) {
+        this.settings = settings;
+        this.stats = stats;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    void write() throws IOException {
+        Path runDir = settings.reportDir().resolve(settings.label() + "-" + timestamp);
+        Files.createDirectories(runDir);
+        for (Map.Entry<Operation, OperationStats> operation : stats.entrySet()) {
+            try (PrintStream out = new PrintStream(Files.newOutputStream(runDir.resolve(operation.getKey().getName() + ".hgrm")), false, StandardCharsets.UTF_8)) {
+                operation.getValue().responseTimes().outputPercentileDistribution(out, NANOS_PER_MILLI);
+            }
+        }
+
+        Path history = settings.reportDir().resolve("history.csv");
+        StringBuilder lines = new StringBuilder();
+        if (Files.notExists(history)) {
+            lines.append(HEADER).append('\n');
+        }
+        stats.forEach((operation, operationStats) -> lines.append(csvLine(operation, operationStats)).append('\n'));
+        Files.writeString(history, lines, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        System.out.printf("Reports written to %s and %s%n", history.toAbsolutePath(), runDir.toAbsolutePath());
+    }
+
+    void print(PrintStream out) {
+        out.printf("%-10s %8s %7s %10s %9s %9s %9s %9s %9s%n", "operation", "count", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        stats.forEach((operation, operationStats) -> {
+            Histogram histogram = operationStats.responseTimes();
+            out.printf(Locale.ROOT, "%-10s %8d %7d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n", operation.getName(), histogram.getTotalCount(),
+                    operationStats.errors(), throughput(histogram), millis(histogram, 50.0), millis(histogram, 90.0),
+                    millis(histogram, 99.0), millis(histogram, 99.9), histogram.getMaxValue() / NANOS_PER_MILLI);
+        });
+    }
+
+    private String csvLine(Operation operation, OperationStats operationStats) {
+        Histogram histogram = operationStats.responseTimes();
+        return String.format(Locale.ROOT, "%s,%s,%s,%d,%d,%d,%d,%.1f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f",
+                settings.label(), timestamp, operation.getName(), settings.rate(), settings.threads(),
+                histogram.getTotalCount(), operationStats.errors(), throughput(histogram),
+                millis(histogram, 50.0), millis(histogram, 90.0), millis(histogram, 99.0), millis(histogram, 99.9),
+                histogram.getMaxValue() / NANOS_PER_MILLI, millis(operationStats.serviceTimes(), 99.0));
+    }
+
+    private double throughput(Histogram histogram) {
+        return histogram.getTotalCount() * NANOS_PER_MILLI * 1000.0 / elapsedNanos;
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / NANOS_PER_MILLI;
+    }
+}
@@ -0,0 +1,58 @@
+package com.mediscreen.patientmicroservice.loadtest;
+
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Settings of a load test run, read from the loadtest.* system properties.
+ *
+ * @param baseUrl         URL of the application under test, null to start it in-process on H2.
+ * @param rate            Requests started per second, whatever the response times.
+ * @param durationSeconds Length of the measured phase.
+ * @param warmupSeconds   Length of the warm-up phase, run at the same rate and not recorded.
+ * @param threads         Maximum number of requests in flight.
+ * @param patients        Number of patients added before the run, the targets of the reads and updates.
+ * @param mix             Weight of each operation in the workload.
+ * @param label           Name of the run in the reports, the current git commit by default.
+ * @param reportDir       Directory of the reports.
+ */
+public record LoadTestSettings(String baseUrl, int rate, int durationSeconds, int warmupSeconds, int threads, int patients,
+                               Map<Operation, Integer> mix, String label, Path reportDir) {
+    private static final String DEFAULT_MIX = "getById:60,list:15,search:10,add:10,update:5";
+
+    public static LoadTestSettings fromSystemProperties() {
+        return new LoadTestSettings(
+                System.getProperty("loadtest.baseUrl"),
+                Integer.getInteger("loadtest.rate", 200),
+                Integer.getInteger("loadtest.duration", 60),
+                Integer.getInteger("loadtest.warmup", 10),
+                Integer.getInteger("loadtest.threads", 32),
+                Integer.getInteger("loadtest.patients", 5000),
+                parseMix(System.getProperty("loadtest.mix", DEFAULT_MIX)),
+                System.getProperty("loadtest.label", GitCommit.current()),
+                Path.of(System.getProperty("loadtest.reportDir", "build/reports/loadtest")));
+    }
+
+    /**
+     * @param mix comma-separated operation:weight, e.g. "getById:80,add:20"
+     * @return the weight of each operation, in declaration order
+     */
+    static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] operationAndWeight = entry.trim().split(":");
+            if (operationAndWeight.length != 2) {
+                throw new IllegalArgumentException("Invalid loadtest.mix entry: " + entry);
+            }
+            int weight = Integer.parseInt(operationAndWeight[1].trim());
+            if (weight > 0) {
+                weights.put(Operation.fromName(operationAndWeight[0].trim()), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("loadtest.mix has no operation: " + mix);
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,67 @@
+package com.mediscreen.patientmicroservice.loadtest;
+
+import com.mediscreen.patientmicroservice.domain.Patient;
+
+import java.net.http.HttpRequest;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Requests of the workload. Reads and updates target the patients added before the run.
+ */
+public enum Operation {
+    GET_BY_ID("getById") {
+        @Override
+        HttpRequest request(Workload workload) {
+            return workload.get("/api/patients/" + workload.randomPatient().getId());
+        }
+    },
+    LIST("list") {
+        @Override
+        HttpRequest request(Workload workload) {
+            return workload.get("/api/patients?limit=50&after=" + workload.randomPatient().getId());
+        }
+    },
+    SEARCH("search") {
+        @Override
+        HttpRequest request(Workload workload) {
+            // a prefix shared by a few dozen patients
+            String lastName = workload.randomPatient().getLastName();
+            return workload.get("/api/patients/search?q=" + lastName.substring(0, lastName.length() - 1));
+        }
+    },
+    ADD("add") {
+        @Override
+        HttpRequest request(Workload workload) {
+            return workload.post("/api/patients", workload.newPatient());
+        }
+    },
+    UPDATE("update") {
+        @Override
+        HttpRequest request(Workload workload) {
+            Patient patient = new Patient(workload.randomPatient());
+            patient.setPhoneNumber("555-%03d-%04d".formatted(ThreadLocalRandom.current().nextInt(1000), ThreadLocalRandom.current().nextInt(10000)));
+            return workload.put("/api/patients/" + patient.getId(), patient);
+        }
+    };
+
+    private final String name;
+
+    Operation(String name) {
+        this.name = name;
+    }
+
+    abstract HttpRequest request(Workload workload);
+
+    public String getName() {
+        return name;
+    }
+
+    static Operation fromName(String name) {
+        for (Operation operation : values()) {
+            if (operation.name.equals(name)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Unknown load test operation: " + name);
+    }
+}
@@ -0,0 +1,39 @@
+package com.mediscreen.patientmicroservice.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies of one operation, in nanoseconds.
+ * The response time is measured from the intended start of the request, the service time from its actual start:
+ * the gap between both is the time requests waited for the generator, hidden by a closed-model load test.
+ */
+class OperationStats {
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final Histogram responseTimes = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+    private final Histogram serviceTimes = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+    private final LongAdder errors = new LongAdder();
+
+    void record(long intendedStart, long actualStart, long end, boolean success) {
+        responseTimes.recordValue(end - intendedStart);
+        serviceTimes.recordValue(end - actualStart);
+        if (!success) {
+            errors.increment();
+        }
+    }
+
+    Histogram responseTimes() {
+        return responseTimes;
+    }
+
+    Histogram serviceTimes() {
+        return serviceTimes;
+    }
+
+    long errors() {
+        return errors.sum();
+    }
+}
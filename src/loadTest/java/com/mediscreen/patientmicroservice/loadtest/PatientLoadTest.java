@@ -0,0 +1,37 @@
+package com.mediscreen.patientmicroservice.loadtest;
+
+import com.mediscreen.patientmicroservice.PatientMicroserviceApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Mixed read/write load test of /api/patients, run with ./gradlew loadTest.
+ * <p>
+ * Without loadtest.baseUrl, the application is started in this JVM with the loadtest profile, on an in-memory H2 database.
+ * Settings are the loadtest.* system properties, see LoadTestSettings, passed from Gradle as -Ploadtest.rate=500.
+ */
+public final class PatientLoadTest {
+    private PatientLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestSettings settings = LoadTestSettings.fromSystemProperties();
+        ConfigurableApplicationContext context = null;
+        String baseUrl = settings.baseUrl();
+        if (baseUrl == null) {
+            context = new SpringApplicationBuilder(PatientMicroserviceApplication.class).profiles("loadtest").run(args);
+            baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+        }
+        try {
+            LoadReport report = new LoadGenerator(settings, baseUrl).run();
+            report.print(System.out);
+            report.write();
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,123 @@
+package com.mediscreen.patientmicroservice.loadtest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.mediscreen.patientmicroservice.domain.Patient;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Data and request builders shared by the operations: the base URL, the patients added before the run
+ * and the names of the patients added during the run, unique across runs against the same database.
+ */
+class Workload {
+    private static final int SEED_BATCH_SIZE = 500;
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final String baseUrl;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong addedPatients = new AtomicLong();
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+    private List<Patient> patients = List.of();
+
+    Workload(String baseUrl, HttpClient httpClient, Map<Operation, Integer> mix) {
+        this.baseUrl = baseUrl;
+        this.httpClient = httpClient;
+        this.operations = mix.keySet().toArray(Operation[]::new);
+        this.cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += mix.get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    /**
+     * Adds the patients targeted by the reads and updates, through the batch endpoint.
+     */
+    void seed(int count) throws IOException, InterruptedException {
+        List<Patient> seeded = new ArrayList<>(count);
+        for (int from = 0; from < count; from += SEED_BATCH_SIZE) {
+            List<Patient> batch = new ArrayList<>();
+            for (int i = from; i < Math.min(from + SEED_BATCH_SIZE, count); i++) {
+                batch.add(patient("Seed" + runId + "N" + i));
+            }
+            HttpResponse<String> response = httpClient.send(post("/api/patients/batch", batch), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 201) {
+                throw new IllegalStateException("Seeding failed with status " + response.statusCode() + ": " + response.body());
+            }
+            seeded.addAll(objectMapper.readValue(response.body(), new TypeReference<List<Patient>>() {
+            }));
+        }
+        patients = List.copyOf(seeded);
+    }
+
+    Operation nextOperation() {
+        int draw = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (draw < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    Patient randomPatient() {
+        return patients.get(ThreadLocalRandom.current().nextInt(patients.size()));
+    }
+
+    Patient newPatient() {
+        return patient("Load" + runId + "N" + addedPatients.incrementAndGet());
+    }
+
+    HttpRequest get(String path) {
+        return request(path).GET().build();
+    }
+
+    HttpRequest post(String path, Object body) {
+        return request(path).header("Content-Type", "application/json").POST(HttpRequest.BodyPublishers.ofString(json(body))).build();
+    }
+
+    HttpRequest put(String path, Object body) {
+        return request(path).header("Content-Type", "application/json").PUT(HttpRequest.BodyPublishers.ofString(json(body))).build();
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(REQUEST_TIMEOUT);
+    }
+
+    private String json(Object body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Patient patient(String lastName) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        LocalDate dateOfBirth = LocalDate.of(1930, 1, 1).plusDays(random.nextInt(30_000));
+        return new Patient(lastName, "FirstName", dateOfBirth, random.nextBoolean() ? "F" : "M", "21 Rue de Paris",
+                "%03d-%03d-%04d".formatted(random.nextInt(1000), random.nextInt(1000), random.nextInt(10000)));
+    }
+}
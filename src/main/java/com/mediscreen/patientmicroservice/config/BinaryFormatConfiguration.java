@@ -0,0 +1,64 @@
+package com.mediscreen.patientmicroservice.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Adds Smile and CBOR, two binary encodings of the same Jackson model, next to JSON.
+ * Clients choose with the Accept and Content-Type headers. Spring MVC already registers default Smile and CBOR
+ * converters after the JSON one; they are replaced in place, so a request accepting any type still gets JSON and the
+ * binary formats write dates like the JSON ObjectMapper does.
+ */
+@Configuration(proxyBeanMethods = false)
+public class BinaryFormatConfiguration implements WebMvcConfigurer {
+    public static final MediaType APPLICATION_SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
+    private final ObjectProvider<Jackson2ObjectMapperBuilder> objectMapperBuilder;
+
+    /**
+     * @param objectMapperBuilder a new builder per call, with the customizations Spring Boot applies to the JSON ObjectMapper
+     */
+    public BinaryFormatConfiguration(ObjectProvider<Jackson2ObjectMapperBuilder> objectMapperBuilder) {
+        this.objectMapperBuilder = objectMapperBuilder;
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        replace(converters, MappingJackson2SmileHttpMessageConverter.class,
+                new MappingJackson2SmileHttpMessageConverter(objectMapperBuilder.getObject().factory(new SmileFactory()).build()));
+        replace(converters, MappingJackson2CborHttpMessageConverter.class,
+                new MappingJackson2CborHttpMessageConverter(objectMapperBuilder.getObject().factory(new CBORFactory()).build()));
+    }
+
+    /**
+     * Puts the converter where the first one of its type was and drops the others, or appends it when there is none.
+     */
+    private static void replace(List<HttpMessageConverter<?>> converters, Class<?> type, HttpMessageConverter<?> converter) {
+        int index = -1;
+        for (int i = 0; i < converters.size() && index < 0; i++) {
+            if (type.isInstance(converters.get(i))) {
+                index = i;
+            }
+        }
+        if (index < 0) {
+            converters.add(converter);
+            return;
+        }
+        converters.set(index, converter);
+        for (int i = converters.size() - 1; i > index; i--) {
+            if (type.isInstance(converters.get(i))) {
+                converters.remove(i);
+            }
+        }
+    }
+}
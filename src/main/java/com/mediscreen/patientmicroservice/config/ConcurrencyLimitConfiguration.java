@@ -0,0 +1,46 @@
+package com.mediscreen.patientmicroservice.config;
+
+import com.mediscreen.patientmicroservice.limit.AdaptiveConcurrencyLimit;
+import com.mediscreen.patientmicroservice.limit.ConcurrencyLimitInterceptor;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+
+/**
+ * Limits the concurrent requests to the patient endpoints, reads and writes separately, see ConcurrencyLimitInterceptor.
+ * The export and the event stream are long-lived by design: they are not limited, and their duration would skew the latency.
+ */
+@Configuration(proxyBeanMethods = false)
+public class ConcurrencyLimitConfiguration implements WebMvcConfigurer {
+    private final ConcurrencyLimitInterceptor concurrencyLimitInterceptor;
+
+    public ConcurrencyLimitConfiguration(@Value("${patient.limit.read.initial:20}") int readInitialLimit,
+                                         @Value("${patient.limit.read.min:4}") int readMinLimit,
+                                         @Value("${patient.limit.read.max:200}") int readMaxLimit,
+                                         @Value("${patient.limit.write.initial:10}") int writeInitialLimit,
+                                         @Value("${patient.limit.write.min:2}") int writeMinLimit,
+                                         @Value("${patient.limit.write.max:100}") int writeMaxLimit,
+                                         @Value("${patient.limit.retry-after:1s}") Duration retryAfter) {
+        this.concurrencyLimitInterceptor = new ConcurrencyLimitInterceptor(
+                new AdaptiveConcurrencyLimit("read", readInitialLimit, readMinLimit, readMaxLimit),
+                new AdaptiveConcurrencyLimit("write", writeInitialLimit, writeMinLimit, writeMaxLimit),
+                retryAfter);
+    }
+
+    @Bean
+    public MeterBinder concurrencyLimitMetrics() {
+        return concurrencyLimitInterceptor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(concurrencyLimitInterceptor)
+                .addPathPatterns("/api/patients/**", "/api/patient")
+                .excludePathPatterns("/api/patients/export", "/api/patients/events");
+    }
+}
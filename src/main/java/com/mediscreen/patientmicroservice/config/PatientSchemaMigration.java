@@ -0,0 +1,125 @@
+package com.mediscreen.patientmicroservice.config;
+
+import com.mediscreen.patientmicroservice.domain.Patient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Completes the schema update of Hibernate (spring.jpa.hibernate.ddl-auto=update) on a MySQL database created before
+ * the pooled id sequence, the change timestamps and the named lastName unique key. It runs once the EntityManagerFactory has updated the schema,
+ * before the web server starts:
+ * <ul>
+ *     <li>Hibernate creates the patients_seq table with next_val 1: it is moved above the existing ids.</li>
+ *     <li>Hibernate can't add created_at and updated_at NOT NULL to existing rows: they are added nullable if missing,
+ *     set to the migration time where null, then made NOT NULL, and idx_patients_updated_at is created.</li>
+ *     <li>{@code @Column(unique = true)} gave lastName a unique key with a generated UK_ name, which the service can't
+ *     tell from the other integrity violations: it is dropped when Hibernate has added {@link Patient#LAST_NAME_CONSTRAINT},
+ *     renamed to it otherwise.</li>
+ * </ul>
+ * Every step checks the schema or the data first, so a migrated database is left as is.
+ */
+@Component
+@Lazy(false)
+@ConditionalOnProperty(name = "spring.jpa.hibernate.ddl-auto", havingValue = "update")
+public class PatientSchemaMigration implements InitializingBean {
+    private static final Logger logger = LoggerFactory.getLogger(PatientSchemaMigration.class);
+    private static final String UPDATED_AT_INDEX = "idx_patients_updated_at";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * @param entityManagerFactory not used, only required so that the schema is updated first
+     */
+    public PatientSchemaMigration(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        String database = jdbcTemplate.execute((ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        if (!"MySQL".equals(database)) {
+            logger.info("No schema migration for {}, from PatientSchemaMigration", database);
+            return;
+        }
+        seedIdSequence();
+        backfillTimestamps();
+        replaceLegacyLastNameKey();
+    }
+
+    /**
+     * The pooled optimizer hands out the ids up to the value read from the sequence, allocation size at a time:
+     * the sequence is moved when that block could reach an existing id. One conditional statement, so concurrent startups agree.
+     */
+    private void seedIdSequence() {
+        int seeded = jdbcTemplate.update(("update %1$s set next_val = (select max(id) from patients) + ? + 1 " +
+                        "where next_val - ? < (select max(id) from patients)").formatted(Patient.ID_SEQUENCE),
+                Patient.ID_ALLOCATION_SIZE, Patient.ID_ALLOCATION_SIZE);
+        if (seeded > 0) {
+            logger.info("{} has been successfully moved above the existing patient ids, from PatientSchemaMigration", Patient.ID_SEQUENCE);
+        }
+    }
+
+    private void backfillTimestamps() {
+        for (String column : List.of("created_at", "updated_at")) {
+            if (isNullable(column) == null) {
+                jdbcTemplate.execute("alter table patients add column %s datetime(6) null".formatted(column));
+                logger.info("Column {} has been successfully added to patients, from PatientSchemaMigration", column);
+            }
+        }
+        // bound like Hibernate binds an Instant, so the values read back are the same
+        Timestamp now = Timestamp.from(Patient.now());
+        int backfilled = jdbcTemplate.update("update patients set created_at = coalesce(created_at, ?), updated_at = coalesce(updated_at, ?) " +
+                "where created_at is null or updated_at is null", now, now);
+        if (backfilled > 0) {
+            logger.info("{} Patients have been successfully given a createdAt and an updatedAt, from PatientSchemaMigration", backfilled);
+        }
+        if (Boolean.TRUE.equals(isNullable("created_at")) || Boolean.TRUE.equals(isNullable("updated_at"))) {
+            jdbcTemplate.execute("alter table patients modify created_at datetime(6) not null, modify updated_at datetime(6) not null");
+        }
+        Integer indexes = jdbcTemplate.queryForObject("select count(*) from information_schema.statistics " +
+                "where table_schema = database() and table_name = 'patients' and index_name = ?", Integer.class, UPDATED_AT_INDEX);
+        if (indexes == null || indexes == 0) {
+            jdbcTemplate.execute("create index %s on patients (updated_at, id)".formatted(UPDATED_AT_INDEX));
+            logger.info("Index {} has been successfully created, from PatientSchemaMigration", UPDATED_AT_INDEX);
+        }
+    }
+
+    private void replaceLegacyLastNameKey() {
+        List<String> lastNameKeys = jdbcTemplate.queryForList("select index_name from information_schema.statistics " +
+                "where table_schema = database() and table_name = 'patients' and non_unique = 0 " +
+                "group by index_name having count(*) = 1 and max(column_name) = 'last_name'", String.class);
+        boolean named = lastNameKeys.stream().anyMatch(Patient.LAST_NAME_CONSTRAINT::equalsIgnoreCase);
+        for (String legacyKey : lastNameKeys) {
+            if (legacyKey.equalsIgnoreCase(Patient.LAST_NAME_CONSTRAINT)) {
+                continue;
+            }
+            if (named) {
+                jdbcTemplate.execute("alter table patients drop index `%s`".formatted(legacyKey));
+                logger.info("Unique key {} on lastName has been successfully dropped, from PatientSchemaMigration", legacyKey);
+            } else {
+                jdbcTemplate.execute("alter table patients rename index `%s` to %s".formatted(legacyKey, Patient.LAST_NAME_CONSTRAINT));
+                logger.info("Unique key {} on lastName has been successfully renamed to {}, from PatientSchemaMigration", legacyKey, Patient.LAST_NAME_CONSTRAINT);
+                named = true;
+            }
+        }
+    }
+
+    /**
+     * @return whether the column of patients is nullable, null if it does not exist
+     */
+    private Boolean isNullable(String column) {
+        List<String> nullable = jdbcTemplate.queryForList("select is_nullable from information_schema.columns " +
+                "where table_schema = database() and table_name = 'patients' and column_name = ?", String.class, column);
+        return nullable.isEmpty() ? null : "YES".equals(nullable.get(0));
+    }
+}
@@ -0,0 +1,57 @@
+package com.mediscreen.patientmicroservice.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.data.repository.core.support.RepositoryMethodInvocationListener;
+import org.springframework.util.function.SingletonSupplier;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Times every Spring Data repository method invocation, tagged by repository, method, state and exception.
+ * Uses the same metric name as Spring Boot 3, so dashboards keep working after an upgrade.
+ */
+@Configuration(proxyBeanMethods = false)
+public class RepositoryMetricsConfiguration {
+    static final String METRIC_NAME = "spring.data.repository.invocations";
+
+    /**
+     * Registers the invocation listener on every repository factory before the repository is created.
+     * Static, so the post-processor does not force the early creation of this configuration.
+     */
+    @Bean
+    public static BeanPostProcessor repositoryMetricsBeanPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        Supplier<MeterRegistry> registry = SingletonSupplier.of(meterRegistry::getObject);
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> repositoryFactoryBean) {
+                    repositoryFactoryBean.addRepositoryFactoryCustomizer(
+                            repositoryFactory -> repositoryFactory.addInvocationListener(new MetricsInvocationListener(registry)));
+                }
+                return bean;
+            }
+        };
+    }
+
+    private record MetricsInvocationListener(Supplier<MeterRegistry> registry) implements RepositoryMethodInvocationListener {
+        @Override
+        public void afterInvocation(RepositoryMethodInvocation invocation) {
+            Throwable error = invocation.getResult().getError();
+            Timer.builder(METRIC_NAME)
+                    .description("Duration of repository method invocations")
+                    .tag("repository", invocation.getRepositoryInterface().getSimpleName())
+                    .tag("method", invocation.getMethod().getName())
+                    .tag("state", invocation.getResult().getState().name())
+                    .tag("exception", error == null ? "none" : error.getClass().getSimpleName())
+                    .register(registry.get())
+                    .record(invocation.getDuration(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+        }
+    }
+}
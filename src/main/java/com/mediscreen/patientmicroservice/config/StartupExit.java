@@ -0,0 +1,63 @@
+package com.mediscreen.patientmicroservice.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Stops the JVM once the application has started, for training and timing runs, when patient.startup.exit-after is set:
+ * <ul>
+ *     <li>started: right after the context refresh, before the ApplicationReadyEvent listeners that read the database,
+ *     so the run needs no database. Used by the cds-training profile to record the loaded classes in a CDS archive.</li>
+ *     <li>ready: once the application accepts traffic, after the search and duplicate indexes are built.</li>
+ * </ul>
+ */
+@Component
+@ConditionalOnProperty("patient.startup.exit-after")
+public class StartupExit {
+    private static final Logger logger = LoggerFactory.getLogger(StartupExit.class);
+    static final String STARTED = "started";
+    static final String READY = "ready";
+
+    private final String exitAfter;
+
+    public StartupExit(@Value("${patient.startup.exit-after}") String exitAfter) {
+        if (!STARTED.equals(exitAfter) && !READY.equals(exitAfter)) {
+            throw new IllegalArgumentException("patient.startup.exit-after must be " + STARTED + " or " + READY + ", not " + exitAfter);
+        }
+        this.exitAfter = exitAfter;
+    }
+
+    @EventListener
+    public void onStarted(ApplicationStartedEvent event) {
+        if (STARTED.equals(exitAfter)) {
+            exit(event.getApplicationContext());
+        }
+    }
+
+    /**
+     * ACCEPTING_TRAFFIC is published after all the ApplicationReadyEvent listeners have returned.
+     */
+    @EventListener
+    public void onReadiness(AvailabilityChangeEvent<ReadinessState> event) {
+        if (READY.equals(exitAfter) && event.getState() == ReadinessState.ACCEPTING_TRAFFIC) {
+            exit((ApplicationContext) event.getSource());
+        }
+    }
+
+    private void exit(ApplicationContext context) {
+        logger.info("Application {} {} ms after the JVM start, exiting as patient.startup.exit-after is set, from StartupExit",
+                exitAfter, ManagementFactory.getRuntimeMXBean().getUptime());
+        System.exit(SpringApplication.exit(context));
+    }
+}
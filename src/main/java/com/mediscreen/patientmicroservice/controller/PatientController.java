@@ -1,20 +1,41 @@
 package com.mediscreen.patientmicroservice.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.mediscreen.patientmicroservice.domain.Patient;
+import com.mediscreen.patientmicroservice.domain.PatientSummary;
 import com.mediscreen.patientmicroservice.exception_handler.ResponseMessage;
 import com.mediscreen.patientmicroservice.exceptions.PatientNotFoundException;
+import com.mediscreen.patientmicroservice.exceptions.PatientValidationException;
+import com.mediscreen.patientmicroservice.exceptions.PatientVersionMismatchException;
+import com.mediscreen.patientmicroservice.search.PatientDuplicateCandidate;
+import com.mediscreen.patientmicroservice.search.PatientDuplicatePair;
+import com.mediscreen.patientmicroservice.search.PatientSearchHit;
+import com.mediscreen.patientmicroservice.service.CacheStatistics;
+import com.mediscreen.patientmicroservice.service.PatientChanges;
+import com.mediscreen.patientmicroservice.service.PatientLookup;
 import com.mediscreen.patientmicroservice.service.PatientService;
+import com.mediscreen.patientmicroservice.service.PatientStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Function;
 
 /**
  * PatientController handles all HTTP requests related to patients.
@@ -25,42 +46,264 @@ import java.util.List;
  */
 @RestController
 @RequestMapping("/api")
-@Transactional
 @CrossOrigin(origins = "http://localhost:4200")
 public class PatientController {
     private static final Logger logger = LoggerFactory.getLogger(PatientController.class);
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int MAX_SEARCH_RESULTS = 50;
+    private static final int MAX_LOOKUP_IDS = 10_000;
+    private static final int MAX_DUPLICATE_PAIRS = 1000;
 
     private final PatientService patientService;
+    private final ObjectMapper objectMapper;
 
-    public PatientController(PatientService patientService) {
+    public PatientController(PatientService patientService, ObjectMapper objectMapper) {
         this.patientService = patientService;
+        this.objectMapper = objectMapper;
     }
 
     /**
-     * Retrieve all Patients
+     * Retrieve all Patients, or one page of Patients when a cursor or a limit is given.
+     * In paging mode, patients are ordered by id and the Link header (rel="next") holds the URI of the next page.
+     * The ETag is the version of the patient list, read in the same transaction as the patients, so on one connection:
+     * an If-None-Match request gets a 304 without reading the patients.
+     * It is weak, Tomcat does not compress a response with a strong ETag.
      *
-     * @return Patient List from DB
+     * @param after      cursor, id of the last Patient of the previous page
+     * @param limit      page size, between 1 and 500
+     * @param webRequest current request, to evaluate the If-None-Match header
+     * @return Patient List from DB, or nothing if not modified
      */
     @GetMapping("/patients")
-    public ResponseEntity<List<Patient>> getAllPatients() {
+    @Transactional(readOnly = true)
+    public ResponseEntity<List<Patient>> getAllPatients(@RequestParam(name = "after", required = false) Long after,
+                                                        @RequestParam(name = "limit", required = false) Integer limit,
+                                                        WebRequest webRequest) {
         logger.debug("getAllPatients from PatientController starts here");
-        List<Patient> patients = patientService.getPatients();
-        logger.info("All Patients have been successfully retrieved from PatientController");
-        return ResponseEntity.ok(patients);
+        // read before the patients: a change committed in between only makes the ETag older than the body
+        if (webRequest.checkNotModified(weakETag(patientService.getPatientsVersion()))) {
+            logger.info("Patients not modified, from PatientController");
+            return null;
+        }
+        if (after == null && limit == null) {
+            List<Patient> patients = patientService.getPatients();
+            logger.info("All Patients have been successfully retrieved from PatientController");
+            return ResponseEntity.ok(patients);
+        }
+
+        long cursor = after == null ? 0L : after;
+        int pageSize = pageSize(limit);
+        // one extra row tells whether a next page exists without a count query
+        List<Patient> patients = patientService.getPatientsAfter(cursor, pageSize + 1);
+        logger.info("Page of Patients after id:{{}} has been successfully retrieved from PatientController", cursor);
+        return page(patients, pageSize, Patient::getId);
     }
 
     /**
-     * Retrieve Patient by patient ID
+     * Retrieve the summary (id, names, dateOfBirth and sex) of all Patients, or of one page of Patients.
+     * Only these columns are read and the Patients are not loaded as entities. The ETag is read like for the whole Patients.
      *
-     * @param id Patient Id
-     * @return Patient or Throws PatientNotFoundException
+     * @param after      cursor, id of the last Patient of the previous page
+     * @param limit      page size, between 1 and 500
+     * @param webRequest current request, to evaluate the If-None-Match header
+     * @return Patient summaries from DB, or nothing if not modified
+     */
+    @GetMapping(value = "/patients", params = "view=summary")
+    @Transactional(readOnly = true)
+    public ResponseEntity<List<PatientSummary>> getAllPatientSummaries(@RequestParam(name = "after", required = false) Long after,
+                                                                       @RequestParam(name = "limit", required = false) Integer limit,
+                                                                       WebRequest webRequest) {
+        logger.debug("getAllPatientSummaries from PatientController starts here");
+        // another representation of the same list, so another entity tag
+        if (webRequest.checkNotModified(weakETag(patientService.getPatientsVersion() + "-summary"))) {
+            logger.info("Patient summaries not modified, from PatientController");
+            return null;
+        }
+        if (after == null && limit == null) {
+            List<PatientSummary> patientSummaries = patientService.getPatientSummaries();
+            logger.info("All Patient summaries have been successfully retrieved from PatientController");
+            return ResponseEntity.ok(patientSummaries);
+        }
+
+        long cursor = after == null ? 0L : after;
+        int pageSize = pageSize(limit);
+        List<PatientSummary> patientSummaries = patientService.getPatientSummariesAfter(cursor, pageSize + 1);
+        logger.info("Page of Patient summaries after id:{{}} has been successfully retrieved from PatientController", cursor);
+        return page(patientSummaries, pageSize, PatientSummary::id);
+    }
+
+    /**
+     * Retrieve Patients by their IDs in one call, e.g. /patients?ids=1,2,3
+     *
+     * @param ids Patient IDs, at most 10000
+     * @return found Patients and the IDs with no Patient
+     */
+    @GetMapping(value = "/patients", params = "ids")
+    public ResponseEntity<PatientLookup> getPatientsByIds(@RequestParam(name = "ids") List<Long> ids) {
+        logger.debug("getPatientsByIds from PatientController starts here");
+        return lookupPatients(ids);
+    }
+
+    /**
+     * Retrieve Patients by their IDs in one call, for sets of IDs too large for a URL
+     *
+     * @param ids Patient IDs, at most 10000
+     * @return found Patients and the IDs with no Patient
+     */
+    @PostMapping("/patients/lookup")
+    public ResponseEntity<PatientLookup> lookupPatientsByIds(@RequestBody List<Long> ids) {
+        logger.debug("lookupPatientsByIds from PatientController starts here");
+        return lookupPatients(ids);
+    }
+
+    /**
+     * Retrieve the Patients created, updated or deleted after a cursor, for an incremental sync, e.g. /patients/changes?since=2023-04-12T10:15:30Z
+     * The body holds the cursor of the next batch, and the Link header (rel="next") its URI when more changes are already available.
+     *
+     * @param since   time of the last change already seen, ISO-8601, from the beginning if absent
+     * @param afterId patient ID of the last change already seen at that time
+     * @param limit   batch size, between 1 and 500
+     * @return changed Patients, deleted Patient IDs and the next cursor
+     */
+    @GetMapping("/patients/changes")
+    public ResponseEntity<PatientChanges> getPatientChanges(@RequestParam(name = "since", required = false) Instant since,
+                                                            @RequestParam(name = "afterId", required = false) Long afterId,
+                                                            @RequestParam(name = "limit", required = false) Integer limit) {
+        logger.debug("getPatientChanges from PatientController starts here");
+        int pageSize = pageSize(limit);
+        PatientChanges patientChanges = patientService.getPatientChanges(since == null ? Instant.EPOCH : since,
+                afterId == null ? 0L : afterId, pageSize);
+        logger.info("Patient changes since:{{}} have been successfully retrieved from PatientController", since);
+        if (!patientChanges.hasMore()) {
+            return ResponseEntity.ok(patientChanges);
+        }
+        String next = ServletUriComponentsBuilder
+                .fromCurrentRequest()
+                .replaceQueryParam("since", patientChanges.since())
+                .replaceQueryParam("afterId", patientChanges.afterId())
+                .replaceQueryParam("limit", pageSize)
+                .toUriString();
+        return ResponseEntity.ok()
+                .header(HttpHeaders.LINK, "<%s>; rel=\"next\"".formatted(next))
+                .body(patientChanges);
+    }
+
+    /**
+     * Export all Patients as newline-delimited JSON, one Patient per line.
+     * Rows are written to the response as they are read from the DB, nothing is buffered in memory.
+     *
+     * @return streamed Patients
+     */
+    @GetMapping(value = "/patients/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportPatients() {
+        logger.debug("exportPatients from PatientController starts here");
+        ObjectWriter patientWriter = objectMapper.writerFor(Patient.class);
+        StreamingResponseBody body = outputStream -> {
+            try {
+                patientService.exportPatients(patient -> {
+                    try {
+                        outputStream.write(patientWriter.writeValueAsBytes(patient));
+                        outputStream.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            logger.info("All Patients have been successfully exported from PatientController");
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    /**
+     * Search Patients by the beginning of their lastName or firstName, tolerating typos
+     *
+     * @param query words typed by the user
+     * @param limit maximum number of results, between 1 and 50
+     * @return best matching Patients first
+     */
+    @GetMapping("/patients/search")
+    public ResponseEntity<List<PatientSearchHit>> searchPatients(@RequestParam(name = "q") String query,
+                                                                 @RequestParam(name = "limit", defaultValue = "10") int limit) {
+        logger.debug("searchPatients from PatientController starts here");
+        List<PatientSearchHit> hits = patientService.searchPatients(query, Math.min(Math.max(limit, 1), MAX_SEARCH_RESULTS));
+        logger.info("{} Patients have been found for query:{{}} from PatientController", hits.size(), query);
+        return ResponseEntity.ok(hits);
+    }
+
+    /**
+     * Check whether a Patient, new or existing, may already be registered under a slightly different name,
+     * date of birth or phone number
+     *
+     * @param patient Patient to check, not saved, validated like a new Patient
+     * @param limit   maximum number of results, between 1 and 50
+     * @return most similar Patients first, empty if there is no likely duplicate
+     */
+    @PostMapping("/patients/duplicates/check")
+    public ResponseEntity<List<PatientDuplicateCandidate>> checkDuplicates(@RequestBody @Valid Patient patient,
+                                                                           @RequestParam(name = "limit", defaultValue = "10") int limit) {
+        logger.debug("checkDuplicates from PatientController starts here");
+        List<PatientDuplicateCandidate> candidates = patientService.checkDuplicates(patient, Math.min(Math.max(limit, 1), MAX_SEARCH_RESULTS));
+        logger.info("{} duplicate candidates have been found for lastName:{{}} from PatientController", candidates.size(), patient.getLastName());
+        return ResponseEntity.ok(candidates);
+    }
+
+    /**
+     * Scan all Patients for likely duplicates
+     *
+     * @param limit maximum number of pairs, between 1 and 1000
+     * @return most similar pairs of Patient IDs first
+     */
+    @GetMapping("/patients/duplicates")
+    public ResponseEntity<List<PatientDuplicatePair>> findDuplicates(@RequestParam(name = "limit", defaultValue = "100") int limit) {
+        logger.debug("findDuplicates from PatientController starts here");
+        List<PatientDuplicatePair> pairs = patientService.findDuplicates(Math.min(Math.max(limit, 1), MAX_DUPLICATE_PAIRS));
+        logger.info("{} duplicate pairs have been found from PatientController", pairs.size());
+        return ResponseEntity.ok(pairs);
+    }
+
+    /**
+     * Retrieve Patient by patient ID, with its version as ETag.
+     * An If-None-Match request only reads the version, the Patient is not loaded when it has not been modified.
+     *
+     * @param id         Patient Id
+     * @param webRequest current request, to evaluate the If-None-Match header
+     * @return Patient, nothing if not modified, or Throws PatientNotFoundException
      */
     @GetMapping("/patients/{id}")
-    public ResponseEntity<Patient> getPatientById(@PathVariable(name = "id") Long id) {
+    public ResponseEntity<Patient> getPatientById(@PathVariable(name = "id") Long id, WebRequest webRequest) {
         logger.debug("getPatientById from PatientController starts here");
+        if (webRequest.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            // sets the ETag header of the response, modified or not
+            if (webRequest.checkNotModified(eTag(patientService.getPatientVersion(id)))) {
+                logger.info("Patient with id:{{}} not modified, from PatientController", id);
+                return null;
+            }
+            Patient patientById = patientService.getPatientById(id);
+            logger.info("Patient with id:{{}} has been successfully retrieved from PatientController", id);
+            return ResponseEntity.ok(patientById);
+        }
         Patient patientById = patientService.getPatientById(id);
         logger.info("Patient with id:{{}} has been successfully retrieved from PatientController", id);
-        return ResponseEntity.ok(patientById);
+        return ResponseEntity.ok().eTag(eTag(patientById.getVersion())).body(patientById);
+    }
+
+    /**
+     * Retrieve the summary (id, names, dateOfBirth and sex) of a Patient by patient ID
+     *
+     * @param id Patient Id
+     * @return Patient summary or Throws PatientNotFoundException
+     */
+    @GetMapping(value = "/patients/{id}", params = "view=summary")
+    public ResponseEntity<PatientSummary> getPatientSummaryById(@PathVariable(name = "id") Long id) {
+        logger.debug("getPatientSummaryById from PatientController starts here");
+        PatientSummary patientSummary = patientService.getPatientSummaryById(id);
+        logger.info("Patient summary with id:{{}} has been successfully retrieved from PatientController", id);
+        return ResponseEntity.ok(patientSummary);
     }
 
     /**
@@ -78,6 +321,20 @@ public class PatientController {
         return ResponseEntity.ok(patientByLastName);
     }
 
+    /**
+     * Retrieve the summary (id, names, dateOfBirth and sex) of a Patient by LastName
+     *
+     * @param lastName Patient LastName
+     * @return Patient summary or Throws PatientNotFoundException
+     */
+    @GetMapping(value = "/patient", params = "view=summary")
+    public ResponseEntity<PatientSummary> getPatientSummaryByLastName(@RequestParam(name = "lastName") String lastName) {
+        logger.debug("getPatientSummaryByLastName from PatientController starts here");
+        PatientSummary patientSummary = patientService.getPatientSummaryByLastName(lastName);
+        logger.info("Patient summary with lastName:{{}} has been successfully retrieved from PatientController", lastName);
+        return ResponseEntity.ok(patientSummary);
+    }
+
     /**
      * Save new Patient, validate the date
      *
@@ -98,19 +355,42 @@ public class PatientController {
     }
 
     /**
-     * Update Patient in DB
+     * Save a batch of new Patients, all or nothing, with JDBC batch inserts
+     *
+     * @param newPatients Patients to add
+     * @return added Patients
+     */
+    @PostMapping("/patients/batch")
+    public ResponseEntity<List<Patient>> addPatients(@RequestBody List<Patient> newPatients) {
+        logger.debug("addPatients from PatientController starts here");
+        List<Patient> savedPatients = patientService.addPatients(newPatients);
+        logger.info("{} Patients have been successfully added to DB, from PatientController", savedPatients.size());
+        return ResponseEntity.status(HttpStatus.CREATED).body(savedPatients);
+    }
+
+    /**
+     * Update Patient in DB.
+     * With an If-Match header holding the ETag of the Patient, the update is done in one statement
+     * and fails with 412 if the Patient has been modified in the meantime.
      *
      * @param id            Existing Patient ID in DB
+     * @param ifMatch       ETag of the Patient to update, optional
      * @param patientUpdate Patient to update
-     * @return Noting
+     * @return updated Patient, with its new ETag when If-Match is given
      */
     @PutMapping("/patients/{id}")
-    public ResponseEntity<Patient> updatePatientById(@PathVariable(name = "id") Long id, @RequestBody @Valid Patient patientUpdate) {
+    public ResponseEntity<Patient> updatePatientById(@PathVariable(name = "id") Long id,
+                                                     @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                     @RequestBody @Valid Patient patientUpdate) {
         logger.debug("updatePatientById from PatientController starts here");
-        Patient patientUpdated = patientService.updatePatientById(id, patientUpdate);
-        logger.info("Patient with id:{{}} has been successfully updated, from PatientController", id);
-
-        return ResponseEntity.ok(patientUpdated);
+        if (ifMatch == null || ifMatch.equals("*")) {
+            Patient patientUpdated = patientService.updatePatientById(id, patientUpdate);
+            logger.info("Patient with id:{{}} has been successfully updated, from PatientController", id);
+            return ResponseEntity.ok(patientUpdated);
+        }
+        Patient patientUpdated = patientService.updatePatientById(id, parseVersion(ifMatch), patientUpdate);
+        logger.info("Patient with id:{{}} has been successfully updated to version:{{}}, from PatientController", id, patientUpdated.getVersion());
+        return ResponseEntity.ok().eTag(eTag(patientUpdated.getVersion())).body(patientUpdated);
     }
 
     /**
@@ -123,13 +403,109 @@ public class PatientController {
     @DeleteMapping("/patients/{id}")
     public ResponseEntity<ResponseMessage> deletePatientById(@PathVariable Long id) {
         logger.debug("deletePatientById from PatientController starts here with id:{{}}", id);
-        Patient patientDeleted = patientService.deletePatientById(id);
+        PatientSummary patientDeleted = patientService.deletePatientById(id);
         logger.info("Patient with id:{{}} has been successfully deleted from PatientController", id);
         return ResponseEntity.ok(
                 new ResponseMessage(
                         200,
                         LocalDateTime.now(),
                         "Patient with id:" + id + " has been successfully deleted from DB!",
-                        "Patient with lastName: " + patientDeleted.getLastName() + " and firstName: " + patientDeleted.getFirstName() + " has been successfully deleted from DB!"));
+                        "Patient with lastName: " + patientDeleted.lastName() + " and firstName: " + patientDeleted.firstName() + " has been successfully deleted from DB!"));
+    }
+
+    /**
+     * Retrieve the number of Patients, by sex and by age band, without reading the Patients
+     *
+     * @return patient counts
+     */
+    @GetMapping("/patients/stats")
+    public ResponseEntity<PatientStats> getPatientStats() {
+        logger.debug("getPatientStats from PatientController starts here");
+        PatientStats patientStats = patientService.getPatientStats();
+        logger.info("Patient stats have been successfully retrieved from PatientController");
+        return ResponseEntity.ok(patientStats);
+    }
+
+    /**
+     * Retrieve hit, miss and eviction statistics of the patient cache
+     *
+     * @return statistics of each cache
+     */
+    @GetMapping("/patients/cache/stats")
+    public ResponseEntity<List<CacheStatistics>> getCacheStatistics() {
+        logger.debug("getCacheStatistics from PatientController starts here");
+        return ResponseEntity.ok(patientService.getCacheStatistics());
+    }
+
+    private ResponseEntity<PatientLookup> lookupPatients(List<Long> ids) {
+        if (ids.size() > MAX_LOOKUP_IDS) {
+            logger.error("{} ids requested, more than {}, from PatientController", ids.size(), MAX_LOOKUP_IDS);
+            throw new PatientValidationException("Too many ids", List.of("At most %d ids can be looked up at once, %d given".formatted(MAX_LOOKUP_IDS, ids.size())));
+        }
+        PatientLookup patientLookup = patientService.getPatientsByIds(ids);
+        logger.info("{} Patients have been successfully retrieved by ids from PatientController", patientLookup.patients().size());
+        return ResponseEntity.ok(patientLookup);
+    }
+
+    /**
+     * @param limit requested page size, optional
+     * @return the page size, between 1 and 500
+     */
+    private static int pageSize(Integer limit) {
+        return limit == null ? DEFAULT_PAGE_SIZE : Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+    }
+
+    /**
+     * @param rows     rows after the cursor, ordered by id, one more than the page size if a next page exists
+     * @param pageSize page size
+     * @param idOf     id of a row, the cursor of the next page
+     * @return the page, with the URI of the next page in the Link header (rel="next") if it exists
+     */
+    private static <T> ResponseEntity<List<T>> page(List<T> rows, int pageSize, Function<T, Long> idOf) {
+        if (rows.size() <= pageSize) {
+            return ResponseEntity.ok(rows);
+        }
+        List<T> page = rows.subList(0, pageSize);
+        String next = ServletUriComponentsBuilder
+                .fromCurrentRequest()
+                .replaceQueryParam("after", idOf.apply(page.get(pageSize - 1)))
+                .replaceQueryParam("limit", pageSize)
+                .toUriString();
+        return ResponseEntity.ok()
+                .header(HttpHeaders.LINK, "<%s>; rel=\"next\"".formatted(next))
+                .body(page);
+    }
+
+    /**
+     * @param eTag If-Match value, one strong entity tag
+     * @return the Patient version held by the entity tag
+     * @throws PatientVersionMismatchException if it is not the entity tag of a Patient version, it can't match
+     */
+    private static Long parseVersion(String eTag) {
+        String version = eTag.trim();
+        if (version.length() > 2 && version.startsWith("\"") && version.endsWith("\"")) {
+            version = version.substring(1, version.length() - 1);
+        }
+        try {
+            return Long.valueOf(version);
+        } catch (NumberFormatException e) {
+            throw new PatientVersionMismatchException("If-Match:{%s} is not a Patient version".formatted(eTag));
+        }
+    }
+
+    /**
+     * @param version version of a Patient or of the Patient list
+     * @return strong entity tag of the version
+     */
+    private static String eTag(Object version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * @param version version of the Patient list
+     * @return weak entity tag of the version, the same for the compressed and uncompressed body
+     */
+    private static String weakETag(Object version) {
+        return "W/" + eTag(version);
     }
 }
@@ -0,0 +1,38 @@
+package com.mediscreen.patientmicroservice.controller;
+
+import com.mediscreen.patientmicroservice.stream.PatientEventStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * PatientEventController streams the committed patient changes to the clients, as Server-Sent Events.
+ */
+@RestController
+@RequestMapping("/api")
+@CrossOrigin(origins = "http://localhost:4200")
+public class PatientEventController {
+    private static final Logger logger = LoggerFactory.getLogger(PatientEventController.class);
+
+    private final PatientEventStream patientEventStream;
+
+    public PatientEventController(PatientEventStream patientEventStream) {
+        this.patientEventStream = patientEventStream;
+    }
+
+    /**
+     * Stream of patient changes: created, updated and deleted events, whose data is the change as JSON.
+     * A client reconnecting with the Last-Event-ID header first gets the changes it missed,
+     * or a reset event when they are not kept anymore.
+     *
+     * @param lastEventId ID of the last event received before a reconnection, optional
+     * @return the event stream
+     */
+    @GetMapping(value = "/patients/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamPatientEvents(@RequestHeader(name = "Last-Event-ID", required = false) String lastEventId) {
+        logger.debug("streamPatientEvents from PatientEventController starts here");
+        return patientEventStream.subscribe(lastEventId);
+    }
+}
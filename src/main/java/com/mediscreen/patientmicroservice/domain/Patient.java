@@ -1,20 +1,37 @@
 package com.mediscreen.patientmicroservice.domain;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import org.springframework.format.annotation.DateTimeFormat;
 
 import javax.persistence.*;
 import javax.validation.constraints.*;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
 import java.util.Objects;
 
 @Entity
-@Table(name = "patients")
+@Table(name = "patients", uniqueConstraints = @UniqueConstraint(name = Patient.LAST_NAME_CONSTRAINT, columnNames = "lastName"),
+        indexes = @Index(name = "idx_patients_updated_at", columnList = "updatedAt, id"))
 public class Patient {
+    /**
+     * Unique constraint on lastName, the DB is the final judge of uniqueness.
+     */
+    public static final String LAST_NAME_CONSTRAINT = "uk_patients_last_name";
+    public static final String ID_SEQUENCE = "patients_seq";
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    /**
+     * Pooled sequence (a table on MySQL): ids are allocated 50 at a time, which keeps JDBC insert batching possible.
+     * On a database created before the sequence, PatientSchemaMigration moves it above the existing ids.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_SEQUENCE)
+    @SequenceGenerator(name = ID_SEQUENCE, sequenceName = ID_SEQUENCE, allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
-    @Column(unique = true, length = 30)
+    @Column(length = 30)
     @NotBlank(message = "Last name is mandatory")
     @Size(max = 30, min = 3)
     @Pattern(regexp = "^[A-Z][aA-zA-Z0-9\\s]{2,}$", message = "The lastName field must contain at least 3 letters and the first letter should be capital.")
@@ -44,6 +61,29 @@ public class Patient {
     @Pattern(regexp = "\\d{3}-\\d{3}-\\d{4}", message = "Phone number must be in xxx-xxx-xxxx format")
     private String phoneNumber;
 
+    /**
+     * Optimistic locking version, also used as the ETag of the patient. Set by Hibernate, never by clients.
+     */
+    @Version
+    @Column(nullable = false)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
+
+    /**
+     * Set on insert, never changed afterwards. Left out of the JSON when unknown, after an update that did not read the patient.
+     */
+    @Column(nullable = false, updatable = false)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Instant createdAt;
+
+    /**
+     * Set on insert and on each update, the sync cursor of /patients/changes together with the id.
+     */
+    @Column(nullable = false)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Instant updatedAt;
+
     public Patient() {
     }
 
@@ -57,6 +97,36 @@ public class Patient {
         this.phoneNumber = phoneNumber;
     }
 
+    /**
+     * Copy constructor, for snapshots that must not follow later changes of the entity.
+     *
+     * @param patient Patient to copy
+     */
+    public Patient(Patient patient) {
+        this(patient.id, patient.lastName, patient.firstName, patient.dateOfBirth, patient.sex, patient.homeAddress, patient.phoneNumber);
+        this.version = patient.version;
+        this.createdAt = patient.createdAt;
+        this.updatedAt = patient.updatedAt;
+    }
+
+    /**
+     * @return the current time, at the precision stored by the DB, so that an entity compares equal to its reloaded copy
+     */
+    public static Instant now() {
+        return Instant.now().truncatedTo(ChronoUnit.MICROS);
+    }
+
+    @PrePersist
+    void onInsert() {
+        createdAt = now();
+        updatedAt = createdAt;
+    }
+
+    @PreUpdate
+    void onUpdate() {
+        updatedAt = now();
+    }
+
     public Patient(String lastName, String firstName, LocalDate dateOfBirth, String sex, String homeAddress, String phoneNumber) {
         this.lastName = lastName;
         this.firstName = firstName;
@@ -122,6 +192,30 @@ public class Patient {
         this.phoneNumber = phoneNumber;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,13 @@
+package com.mediscreen.patientmicroservice.domain;
+
+import java.time.LocalDate;
+
+/**
+ * Number of patients sharing a sex and a date of birth, one row of a grouped count.
+ *
+ * @param sex         The sex of the patients.
+ * @param dateOfBirth The date of birth of the patients.
+ * @param count       The number of patients.
+ */
+public record PatientCount(String sex, LocalDate dateOfBirth, Long count) {
+}
@@ -0,0 +1,18 @@
+package com.mediscreen.patientmicroservice.domain;
+
+import java.time.LocalDate;
+
+/**
+ * Identity columns of a Patient, read without loading the entity.
+ *
+ * @param id          The ID of the patient.
+ * @param lastName    The lastName of the patient.
+ * @param firstName   The firstName of the patient.
+ * @param dateOfBirth The date of birth of the patient.
+ * @param sex         The sex of the patient.
+ */
+public record PatientSummary(Long id, String lastName, String firstName, LocalDate dateOfBirth, String sex) {
+    public static PatientSummary of(Patient patient) {
+        return new PatientSummary(patient.getId(), patient.getLastName(), patient.getFirstName(), patient.getDateOfBirth(), patient.getSex());
+    }
+}
@@ -0,0 +1,55 @@
+package com.mediscreen.patientmicroservice.domain;
+
+import javax.persistence.*;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Trace of a deleted Patient, so that /patients/changes can tell synced copies to delete it.
+ */
+@Entity
+@Table(name = "patient_tombstones", indexes = @Index(name = "idx_patient_tombstones_deleted_at", columnList = "deletedAt, patientId"))
+public class PatientTombstone {
+    @Id
+    private Long patientId;
+
+    @Column(nullable = false)
+    private Instant deletedAt;
+
+    public PatientTombstone() {
+    }
+
+    public PatientTombstone(Long patientId, Instant deletedAt) {
+        this.patientId = patientId;
+        this.deletedAt = deletedAt;
+    }
+
+    public Long getPatientId() {
+        return patientId;
+    }
+
+    public void setPatientId(Long patientId) {
+        this.patientId = patientId;
+    }
+
+    public Instant getDeletedAt() {
+        return deletedAt;
+    }
+
+    public void setDeletedAt(Instant deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        PatientTombstone that = (PatientTombstone) o;
+        return Objects.equals(patientId, that.patientId) && Objects.equals(deletedAt, that.deletedAt);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(patientId, deletedAt);
+    }
+}
@@ -2,7 +2,14 @@ package com.mediscreen.patientmicroservice.exception_handler;
 
 import com.mediscreen.patientmicroservice.exceptions.PatientAlreadyExistException;
 import com.mediscreen.patientmicroservice.exceptions.PatientNotFoundException;
+import com.mediscreen.patientmicroservice.exceptions.PatientServiceUnavailableException;
+import com.mediscreen.patientmicroservice.exceptions.PatientValidationException;
+import com.mediscreen.patientmicroservice.exceptions.PatientVersionMismatchException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.springframework.context.support.DefaultMessageSourceResolvable;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -16,13 +23,25 @@ import java.time.LocalDateTime;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
  * A custom(Global) exception handler for handling Patient-related exceptions in the application.
  */
 @ControllerAdvice
-public class PatientExceptionHandler extends ResponseEntityExceptionHandler {
+public class PatientExceptionHandler extends ResponseEntityExceptionHandler implements MeterBinder {
+    /**
+     * Counter of the handled Patient exceptions, tagged by the exception type of the handler.
+     * As a MeterBinder, the handler registers one counter per type in the registry of the application.
+     */
+    static final String EXCEPTIONS_METRIC_NAME = "patient.exceptions";
+    private static final List<Class<? extends RuntimeException>> COUNTED_EXCEPTIONS = List.of(
+            PatientNotFoundException.class, PatientAlreadyExistException.class, PatientVersionMismatchException.class,
+            OptimisticLockingFailureException.class, PatientServiceUnavailableException.class, PatientValidationException.class);
+
+    private final Map<Class<? extends RuntimeException>, Counter> exceptionCounters = new ConcurrentHashMap<>();
+
     /**
      * Handle the PatientNotFoundException.
      *
@@ -32,6 +51,7 @@ public class PatientExceptionHandler extends ResponseEntityExceptionHandler {
      */
     @ExceptionHandler(PatientNotFoundException.class)
     public ResponseEntity<ResponseMessage> handlePatientNotFoundException(PatientNotFoundException patientNotFoundException, WebRequest webRequest) {
+        countException(PatientNotFoundException.class);
         ResponseMessage errorResponse = new ResponseMessage(
                 HttpStatus.NOT_FOUND.value(),
                 LocalDateTime.now(),
@@ -50,6 +70,7 @@ public class PatientExceptionHandler extends ResponseEntityExceptionHandler {
      */
     @ExceptionHandler(PatientAlreadyExistException.class)
     public ResponseEntity<ResponseMessage> handlePatientAlreadyExistException(PatientAlreadyExistException patientAlreadyExistException, WebRequest webRequest) {
+        countException(PatientAlreadyExistException.class);
         ResponseMessage errorResponse = new ResponseMessage(
                 HttpStatus.BAD_REQUEST.value(),
                 LocalDateTime.now(),
@@ -59,6 +80,83 @@ public class PatientExceptionHandler extends ResponseEntityExceptionHandler {
         return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
     }
 
+    /**
+     * Handle the PatientVersionMismatchException.
+     *
+     * @param patientVersionMismatchException the exception to handle
+     * @param webRequest                      WebRequest
+     * @return a ResponseEntity with an ErrorMessage and HttpStatus.PRECONDITION_FAILED
+     */
+    @ExceptionHandler(PatientVersionMismatchException.class)
+    public ResponseEntity<ResponseMessage> handlePatientVersionMismatchException(PatientVersionMismatchException patientVersionMismatchException, WebRequest webRequest) {
+        countException(PatientVersionMismatchException.class);
+        ResponseMessage errorResponse = new ResponseMessage(
+                HttpStatus.PRECONDITION_FAILED.value(),
+                LocalDateTime.now(),
+                patientVersionMismatchException.getMessage(),
+                webRequest.getDescription(false)
+        );
+        return new ResponseEntity<>(errorResponse, HttpStatus.PRECONDITION_FAILED);
+    }
+
+    /**
+     * Handle the OptimisticLockingFailureException, thrown when a patient updated without If-Match has been modified
+     * by a concurrent request between the read and the write.
+     *
+     * @param optimisticLockingFailureException the exception to handle
+     * @param webRequest                        WebRequest
+     * @return a ResponseEntity with an ErrorMessage and HttpStatus.CONFLICT
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ResponseMessage> handleOptimisticLockingFailureException(OptimisticLockingFailureException optimisticLockingFailureException, WebRequest webRequest) {
+        countException(OptimisticLockingFailureException.class);
+        ResponseMessage errorResponse = new ResponseMessage(
+                HttpStatus.CONFLICT.value(),
+                LocalDateTime.now(),
+                "Patient has been modified concurrently, read it again before updating it",
+                webRequest.getDescription(false)
+        );
+        return new ResponseEntity<>(errorResponse, HttpStatus.CONFLICT);
+    }
+
+    /**
+     * Handle the PatientServiceUnavailableException, thrown when a request is above the concurrency limit.
+     *
+     * @param patientServiceUnavailableException the exception to handle
+     * @param webRequest                         WebRequest
+     * @return a ResponseEntity with an ErrorMessage, a Retry-After header and HttpStatus.SERVICE_UNAVAILABLE
+     */
+    @ExceptionHandler(PatientServiceUnavailableException.class)
+    public ResponseEntity<ResponseMessage> handlePatientServiceUnavailableException(PatientServiceUnavailableException patientServiceUnavailableException, WebRequest webRequest) {
+        countException(PatientServiceUnavailableException.class);
+        ResponseMessage errorResponse = new ResponseMessage(
+                HttpStatus.SERVICE_UNAVAILABLE.value(),
+                LocalDateTime.now(),
+                patientServiceUnavailableException.getMessage(),
+                webRequest.getDescription(false)
+        );
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, patientServiceUnavailableException.getRetryAfter().toSeconds())))
+                .body(errorResponse);
+    }
+
+    /**
+     * Handle the PatientValidationException, with the same body as an invalid request body.
+     *
+     * @param patientValidationException the exception to handle
+     * @return a ResponseEntity with the validation errors and HttpStatus.BAD_REQUEST
+     */
+    @ExceptionHandler(PatientValidationException.class)
+    public ResponseEntity<Object> handlePatientValidationException(PatientValidationException patientValidationException) {
+        countException(PatientValidationException.class);
+        Map<String, Object> responseBody = new LinkedHashMap<>();
+        responseBody.put("timestamp", LocalDateTime.now());
+        responseBody.put("status", HttpStatus.BAD_REQUEST.value());
+        responseBody.put("errors", patientValidationException.getErrors());
+
+        return new ResponseEntity<>(responseBody, HttpStatus.BAD_REQUEST);
+    }
+
     @Override
     protected ResponseEntity<Object> handleMethodArgumentNotValid(MethodArgumentNotValidException ex, HttpHeaders headers, HttpStatus status, WebRequest request) {
 
@@ -75,4 +173,24 @@ public class PatientExceptionHandler extends ResponseEntityExceptionHandler {
 
         return new ResponseEntity<>(responseBody, headers, status);
     }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Class<? extends RuntimeException> exceptionType : COUNTED_EXCEPTIONS) {
+            exceptionCounters.put(exceptionType, Counter.builder(EXCEPTIONS_METRIC_NAME)
+                    .description("Patient exceptions handled")
+                    .tag("exception", exceptionType.getSimpleName())
+                    .register(registry));
+        }
+    }
+
+    /**
+     * @param exceptionType the exception type of the handler, not counted until the handler is bound to a registry
+     */
+    private void countException(Class<? extends RuntimeException> exceptionType) {
+        Counter counter = exceptionCounters.get(exceptionType);
+        if (counter != null) {
+            counter.increment();
+        }
+    }
 }
@@ -0,0 +1,20 @@
+package com.mediscreen.patientmicroservice.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.time.Duration;
+
+@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE, reason = "Too many concurrent requests!")
+public class PatientServiceUnavailableException extends RuntimeException {
+    private final Duration retryAfter;
+
+    public PatientServiceUnavailableException(String s, Duration retryAfter) {
+        super(s);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,20 @@
+package com.mediscreen.patientmicroservice.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.List;
+
+@ResponseStatus(value = HttpStatus.BAD_REQUEST, reason = "Patients are not valid!")
+public class PatientValidationException extends RuntimeException {
+    private final List<String> errors;
+
+    public PatientValidationException(String s, List<String> errors) {
+        super(s);
+        this.errors = List.copyOf(errors);
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+}
@@ -0,0 +1,11 @@
+package com.mediscreen.patientmicroservice.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.PRECONDITION_FAILED, reason = "Patient has been modified in DB!")
+public class PatientVersionMismatchException extends RuntimeException {
+    public PatientVersionMismatchException(String s) {
+        super(s);
+    }
+}
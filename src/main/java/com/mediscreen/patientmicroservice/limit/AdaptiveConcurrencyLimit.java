@@ -0,0 +1,103 @@
+package com.mediscreen.patientmicroservice.limit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A limit on the requests in flight, adapted to their latency, after the gradient algorithm of Netflix concurrency-limits.
+ * <p>
+ * The long-term average latency is the baseline. When recent requests are slower than the baseline by more than the tolerance,
+ * they are queuing somewhere (Tomcat threads, the connection pool, MySQL), so the limit is lowered in proportion, by half at most.
+ * While the latency holds, the limit grows by the square root of itself. Samples taken while less than half the limit is used
+ * only update the baseline: they say nothing about the capacity.
+ */
+public class AdaptiveConcurrencyLimit {
+    private static final double TOLERANCE = 1.5;
+    private static final double MIN_GRADIENT = 0.5;
+    private static final double SMOOTHING = 0.2;
+    private static final int LONG_WINDOW = 600;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private volatile int limit;
+    // guarded by this
+    private double estimatedLimit;
+    private double longRttNanos;
+    private long samples;
+
+    public AdaptiveConcurrencyLimit(String name, int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("The %s limits must be 1 <= min <= initial <= max, not %d, %d, %d"
+                    .formatted(name, minLimit, initialLimit, maxLimit));
+        }
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+        this.estimatedLimit = initialLimit;
+    }
+
+    /**
+     * Admits a request if fewer requests than the limit are in flight, otherwise counts it as rejected.
+     *
+     * @return true if admitted, then {@link #release(long)} must be called when it completes
+     */
+    public boolean tryAcquire() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= limit) {
+                rejected.increment();
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * Ends an admitted request and adapts the limit to its latency.
+     *
+     * @param rttNanos the time from admission to completion
+     */
+    public void release(long rttNanos) {
+        int inFlightBefore = inFlight.getAndDecrement();
+        onSample(rttNanos, inFlightBefore);
+    }
+
+    synchronized void onSample(long rttNanos, int inFlightBefore) {
+        double rtt = Math.max(rttNanos, 1L);
+        samples++;
+        // plain average of the first samples, then exponential average over the long window
+        longRttNanos += (rtt - longRttNanos) / Math.min(samples, LONG_WINDOW);
+        if (longRttNanos > 2 * rtt) {
+            // the latency is back far below the baseline, after a slow period: let the baseline come down faster
+            longRttNanos *= 0.95;
+        }
+        if (inFlightBefore < estimatedLimit / 2) {
+            return;
+        }
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, TOLERANCE * longRttNanos / rtt));
+        double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, estimatedLimit * (1 - SMOOTHING) + newLimit * SMOOTHING));
+        limit = (int) estimatedLimit;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,80 @@
+package com.mediscreen.patientmicroservice.limit;
+
+import com.mediscreen.patientmicroservice.exceptions.PatientServiceUnavailableException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Admits each request within the concurrency limit of reads (GET and HEAD) or of writes, so a slow database holds a bounded
+ * number of threads. Requests above the limit are rejected with a PatientServiceUnavailableException, before their body is read.
+ */
+public class ConcurrencyLimitInterceptor implements HandlerInterceptor, MeterBinder {
+    private static final Logger logger = LoggerFactory.getLogger(ConcurrencyLimitInterceptor.class);
+    private static final String ADMISSION_ATTRIBUTE = ConcurrencyLimitInterceptor.class.getName() + ".admission";
+
+    private final AdaptiveConcurrencyLimit readLimit;
+    private final AdaptiveConcurrencyLimit writeLimit;
+    private final Duration retryAfter;
+
+    public ConcurrencyLimitInterceptor(AdaptiveConcurrencyLimit readLimit, AdaptiveConcurrencyLimit writeLimit, Duration retryAfter) {
+        this.readLimit = readLimit;
+        this.writeLimit = writeLimit;
+        this.retryAfter = retryAfter;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        AdaptiveConcurrencyLimit limit = isRead(request) ? readLimit : writeLimit;
+        if (!limit.tryAcquire()) {
+            logger.debug("{} {} rejected above the {} limit of {}, from ConcurrencyLimitInterceptor",
+                    request.getMethod(), request.getRequestURI(), limit.getName(), limit.getLimit());
+            throw new PatientServiceUnavailableException("Too many concurrent %s requests, retry later".formatted(limit.getName()), retryAfter);
+        }
+        request.setAttribute(ADMISSION_ATTRIBUTE, new Admission(limit, System.nanoTime()));
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(ADMISSION_ATTRIBUTE) instanceof Admission admission) {
+            request.removeAttribute(ADMISSION_ATTRIBUTE);
+            admission.limit().release(System.nanoTime() - admission.startNanos());
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (AdaptiveConcurrencyLimit limit : List.of(readLimit, writeLimit)) {
+            Gauge.builder("patient.limit.concurrency", limit, AdaptiveConcurrencyLimit::getLimit)
+                    .description("Current adaptive limit of concurrent requests")
+                    .tag("kind", limit.getName())
+                    .register(registry);
+            Gauge.builder("patient.limit.inflight", limit, AdaptiveConcurrencyLimit::getInFlight)
+                    .description("Requests in flight within the limit")
+                    .tag("kind", limit.getName())
+                    .register(registry);
+            FunctionCounter.builder("patient.limit.rejected", limit, AdaptiveConcurrencyLimit::getRejected)
+                    .description("Requests rejected with 503 above the limit")
+                    .tag("kind", limit.getName())
+                    .register(registry);
+        }
+    }
+
+    private static boolean isRead(HttpServletRequest request) {
+        return HttpMethod.GET.matches(request.getMethod()) || HttpMethod.HEAD.matches(request.getMethod());
+    }
+
+    private record Admission(AdaptiveConcurrencyLimit limit, long startNanos) {
+    }
+}
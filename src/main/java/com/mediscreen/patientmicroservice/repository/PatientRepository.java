@@ -1,10 +1,101 @@
 package com.mediscreen.patientmicroservice.repository;
 
 import com.mediscreen.patientmicroservice.domain.Patient;
+import com.mediscreen.patientmicroservice.domain.PatientCount;
+import com.mediscreen.patientmicroservice.domain.PatientSummary;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import javax.persistence.QueryHint;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 public interface PatientRepository extends JpaRepository<Patient, Long> {
     Optional<Patient> findByLastName(String lastName);
+
+    @Query("select p.version from Patient p where p.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    /**
+     * Updates a patient in one statement, only if its version is still the given one.
+     *
+     * @return 1 if the patient has been updated, 0 if it does not exist or has another version
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Patient p set p.lastName = :#{#patient.lastName}, p.firstName = :#{#patient.firstName}, " +
+            "p.dateOfBirth = :#{#patient.dateOfBirth}, p.sex = :#{#patient.sex}, p.homeAddress = :#{#patient.homeAddress}, " +
+            "p.phoneNumber = :#{#patient.phoneNumber}, p.updatedAt = :#{#patient.updatedAt}, p.version = p.version + 1 " +
+            "where p.id = :id and p.version = :version")
+    int updateByIdAndVersion(@Param("id") Long id, @Param("version") Long version, @Param("patient") Patient patient);
+
+    @Query("select new com.mediscreen.patientmicroservice.domain.PatientSummary(p.id, p.lastName, p.firstName, p.dateOfBirth, p.sex) " +
+            "from Patient p where p.id = :id")
+    Optional<PatientSummary> findSummaryById(@Param("id") Long id);
+
+    @Query("select new com.mediscreen.patientmicroservice.domain.PatientSummary(p.id, p.lastName, p.firstName, p.dateOfBirth, p.sex) " +
+            "from Patient p where p.lastName = :lastName")
+    Optional<PatientSummary> findSummaryByLastName(@Param("lastName") String lastName);
+
+    @Query("select new com.mediscreen.patientmicroservice.domain.PatientSummary(p.id, p.lastName, p.firstName, p.dateOfBirth, p.sex) " +
+            "from Patient p order by p.id")
+    List<PatientSummary> findAllSummaries();
+
+    @Query("select new com.mediscreen.patientmicroservice.domain.PatientSummary(p.id, p.lastName, p.firstName, p.dateOfBirth, p.sex) " +
+            "from Patient p where p.id > :id order by p.id")
+    List<PatientSummary> findSummariesByIdGreaterThan(@Param("id") Long id, Pageable pageable);
+
+    /**
+     * Deletes a patient in one statement, without loading it first like deleteById.
+     *
+     * @return 1 if the patient has been deleted, 0 if it does not exist
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Patient p where p.id = :id")
+    int deletePatientById(@Param("id") Long id);
+
+    List<Patient> findByIdIn(Collection<Long> ids);
+
+    @Query("select new com.mediscreen.patientmicroservice.domain.PatientCount(p.sex, p.dateOfBirth, count(p)) " +
+            "from Patient p group by p.sex, p.dateOfBirth")
+    List<PatientCount> countBySexAndDateOfBirth();
+
+    @Query("select p.lastName from Patient p where p.lastName in :lastNames")
+    List<String> findExistingLastNames(@Param("lastNames") Collection<String> lastNames);
+
+    /**
+     * Keyset page: patients whose id is strictly greater than the given cursor, ordered by id.
+     * Only the page size of the Pageable is used, so the cost per page does not depend on the cursor position.
+     */
+    List<Patient> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    /**
+     * The last change of the patients, read from the end of idx_patients_updated_at.
+     */
+    @Query("select max(p.updatedAt) from Patient p")
+    Optional<Instant> findLastUpdatedAt();
+
+    /**
+     * Keyset page of the patients changed after the cursor (updatedAt, id), served by idx_patients_updated_at.
+     */
+    @Query("select p from Patient p where p.updatedAt > :since or (p.updatedAt = :since and p.id > :afterId) " +
+            "order by p.updatedAt, p.id")
+    List<Patient> findChangedAfter(@Param("since") Instant since, @Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Streams all patients ordered by id, reading them from the JDBC cursor in chunks of the fetch size.
+     * Must be consumed inside a transaction and closed after use.
+     */
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("select p from Patient p order by p.id")
+    Stream<Patient> streamAll();
 }
@@ -0,0 +1,26 @@
+package com.mediscreen.patientmicroservice.repository;
+
+import com.mediscreen.patientmicroservice.domain.PatientTombstone;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+public interface PatientTombstoneRepository extends JpaRepository<PatientTombstone, Long> {
+    /**
+     * The last deletion, read from the end of idx_patient_tombstones_deleted_at.
+     */
+    @Query("select max(t.deletedAt) from PatientTombstone t")
+    Optional<Instant> findLastDeletedAt();
+
+    /**
+     * Keyset page of the tombstones after the cursor (deletedAt, patientId), served by idx_patient_tombstones_deleted_at.
+     */
+    @Query("select t from PatientTombstone t where t.deletedAt > :since or (t.deletedAt = :since and t.patientId > :afterId) " +
+            "order by t.deletedAt, t.patientId")
+    List<PatientTombstone> findDeletedAfter(@Param("since") Instant since, @Param("afterId") Long afterId, Pageable pageable);
+}
@@ -0,0 +1,114 @@
+package com.mediscreen.patientmicroservice.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * String helpers shared by the in-memory name indexes: normalization, tokens, trigrams and edit distance.
+ */
+public final class NameMatching {
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^a-z0-9]+");
+
+    private NameMatching() {
+    }
+
+    /**
+     * Lower-cases and strips accents, so that "Jaurès" and "jaures" are the same name.
+     *
+     * @param name raw name, may be null
+     * @return the normalized name, empty if null
+     */
+    public static String normalize(String name) {
+        if (name == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(name, Normalizer.Form.NFD);
+        return DIACRITICS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT).trim();
+    }
+
+    /**
+     * @param name raw name, may be null
+     * @return the normalized tokens of the name, split on anything that is not a letter or a digit
+     */
+    public static List<String> tokens(String name) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : SEPARATORS.split(normalize(name))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Trigrams of a token padded with '$', so that the first and last letters weigh as much as the inner ones.
+     *
+     * @param token normalized token
+     * @return distinct trigrams of the token
+     */
+    public static Set<String> trigrams(String token) {
+        String padded = "$" + token + "$";
+        Set<String> trigrams = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            trigrams.add(padded.substring(i, i + 3));
+        }
+        if (trigrams.isEmpty()) {
+            trigrams.add(padded);
+        }
+        return trigrams;
+    }
+
+    /**
+     * Levenshtein distance, abandoned as soon as it exceeds maxDistance.
+     *
+     * @param a           first string
+     * @param b           second string
+     * @param maxDistance largest distance of interest
+     * @return the distance, or maxDistance + 1 if it is larger than maxDistance
+     */
+    public static int editDistance(String a, String b, int maxDistance) {
+        if (Math.abs(a.length() - b.length()) > maxDistance) {
+            return maxDistance + 1;
+        }
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMinimum = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+                rowMinimum = Math.min(rowMinimum, current[j]);
+            }
+            if (rowMinimum > maxDistance) {
+                return maxDistance + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[b.length()], maxDistance + 1);
+    }
+
+    /**
+     * Typo tolerance that grows with the length of what was typed.
+     *
+     * @param token normalized token
+     * @return the largest accepted edit distance for this token
+     */
+    public static int maxEditDistance(String token) {
+        if (token.length() <= 2) {
+            return 0;
+        }
+        return token.length() <= 5 ? 1 : 2;
+    }
+}
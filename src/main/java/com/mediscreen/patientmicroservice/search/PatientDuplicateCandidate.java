@@ -0,0 +1,15 @@
+package com.mediscreen.patientmicroservice.search;
+
+import java.time.LocalDate;
+
+/**
+ * An existing patient that may be the same person as the checked one.
+ *
+ * @param id          The ID of the patient.
+ * @param lastName    The lastName of the patient.
+ * @param firstName   The firstName of the patient.
+ * @param dateOfBirth The date of birth of the patient.
+ * @param score       The similarity, from 0 to 1.
+ */
+public record PatientDuplicateCandidate(Long id, String lastName, String firstName, LocalDate dateOfBirth, double score) {
+}
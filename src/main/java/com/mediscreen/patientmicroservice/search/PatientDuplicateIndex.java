@@ -0,0 +1,284 @@
+package com.mediscreen.patientmicroservice.search;
+
+import com.mediscreen.patientmicroservice.domain.Patient;
+import com.mediscreen.patientmicroservice.repository.PatientRepository;
+import com.mediscreen.patientmicroservice.service.PatientChangeEvent;
+import org.apache.commons.codec.language.DoubleMetaphone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory blocking index for near-duplicate patients, e.g. "Smith" and "Smyth" born the same day.
+ * Built at startup from the database, then kept current by the PatientChangeEvent published after each commit.
+ * <p>
+ * Each patient is put in two blocks: the phonetic key (Double Metaphone) of its lastName with its date of birth,
+ * and the phonetic keys of its lastName and firstName, so that a typo in the date of birth is still caught.
+ * Only patients sharing a block are scored, on name, date of birth and phone number similarity,
+ * so a check never scans all patients.
+ */
+@Component
+public class PatientDuplicateIndex {
+    private static final Logger logger = LoggerFactory.getLogger(PatientDuplicateIndex.class);
+    private static final int PAGE_SIZE = 1000;
+    /**
+     * Larger blocks are skipped by the full scan, their pairs would cost more than they tell.
+     */
+    private static final int MAX_BLOCK_SIZE = 1000;
+    private static final double LAST_NAME_WEIGHT = 0.35;
+    private static final double FIRST_NAME_WEIGHT = 0.25;
+    private static final double DATE_OF_BIRTH_WEIGHT = 0.25;
+    private static final double PHONE_NUMBER_WEIGHT = 0.15;
+    private static final double SAME_SOUND_SIMILARITY = 0.8;
+
+    private final PatientRepository patientRepository;
+    private final double threshold;
+    private final DoubleMetaphone doubleMetaphone = new DoubleMetaphone();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final Map<String, Set<Long>> idsByBlock = new HashMap<>();
+
+    public PatientDuplicateIndex(PatientRepository patientRepository,
+                                 @Value("${patient.duplicates.threshold:0.75}") double threshold) {
+        this.patientRepository = patientRepository;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Loads all patients, one keyset page at a time, once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        logger.debug("rebuild from PatientDuplicateIndex starts here");
+        long afterId = 0L;
+        int count = 0;
+        List<Patient> page;
+        do {
+            page = patientRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, PAGE_SIZE));
+            page.forEach(this::put);
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getId();
+            }
+            count += page.size();
+        } while (page.size() == PAGE_SIZE);
+        logger.info("{} Patients have been indexed for duplicate detection, from PatientDuplicateIndex", count);
+    }
+
+    /**
+     * Applies a committed change to the index.
+     *
+     * @param event the change
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPatientChange(PatientChangeEvent event) {
+        if (event.type() == PatientChangeEvent.Type.DELETED) {
+            remove(event.patientId());
+        } else if (event.current() != null) {
+            put(event.current());
+        }
+    }
+
+    /**
+     * Scores the patients sharing a block with the given one.
+     *
+     * @param patient patient to check, new or existing
+     * @param limit   maximum number of candidates
+     * @return the patients at least as similar as the threshold, most similar first, never the patient itself
+     */
+    public List<PatientDuplicateCandidate> findCandidates(Patient patient, int limit) {
+        Entry checked = entry(patient);
+        lock.readLock().lock();
+        try {
+            Set<Long> ids = new HashSet<>();
+            for (String block : checked.blocks()) {
+                ids.addAll(idsByBlock.getOrDefault(block, Set.of()));
+            }
+            ids.remove(patient.getId());
+            return ids.stream()
+                    .map(entries::get)
+                    .map(entry -> entry.toCandidate(score(checked, entry)))
+                    .filter(candidate -> candidate.score() >= threshold)
+                    .sorted(Comparator.comparingDouble(PatientDuplicateCandidate::score).reversed()
+                            .thenComparing(PatientDuplicateCandidate::id))
+                    .limit(limit)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Full dedupe: scores every pair of patients sharing a block, the blocks being processed in parallel.
+     * The blocks are copied under the read lock, so changes are not held back while the pairs are scored.
+     *
+     * @param limit maximum number of pairs
+     * @return the pairs at least as similar as the threshold, most similar first
+     */
+    public List<PatientDuplicatePair> findDuplicatePairs(int limit) {
+        List<List<Entry>> blocks = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<String, Set<Long>> block : idsByBlock.entrySet()) {
+                if (block.getValue().size() > MAX_BLOCK_SIZE) {
+                    logger.warn("Block {} of {} patients skipped, from PatientDuplicateIndex", block.getKey(), block.getValue().size());
+                } else if (block.getValue().size() > 1) {
+                    blocks.add(block.getValue().stream().map(entries::get).toList());
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        // a pair sharing both blocks is found twice, with the same score
+        Map<List<Long>, PatientDuplicatePair> pairs = blocks.parallelStream()
+                .flatMap(block -> pairs(block).stream())
+                .collect(Collectors.toConcurrentMap(pair -> List.of(pair.id(), pair.otherId()), pair -> pair, (a, b) -> a));
+        logger.info("{} duplicate pairs found in {} blocks, from PatientDuplicateIndex", pairs.size(), blocks.size());
+        return pairs.values().stream()
+                .sorted(Comparator.comparingDouble(PatientDuplicatePair::score).reversed()
+                        .thenComparing(PatientDuplicatePair::id)
+                        .thenComparing(PatientDuplicatePair::otherId))
+                .limit(limit)
+                .toList();
+    }
+
+    void put(Patient patient) {
+        Entry entry = entry(patient);
+        lock.writeLock().lock();
+        try {
+            Entry previous = entries.put(entry.id(), entry);
+            if (previous != null) {
+                unindex(previous);
+            }
+            for (String block : entry.blocks()) {
+                idsByBlock.computeIfAbsent(block, newBlock -> new HashSet<>()).add(entry.id());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            Entry previous = entries.remove(id);
+            if (previous != null) {
+                unindex(previous);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void unindex(Entry entry) {
+        for (String block : entry.blocks()) {
+            Set<Long> ids = idsByBlock.get(block);
+            if (ids != null) {
+                ids.remove(entry.id());
+                if (ids.isEmpty()) {
+                    idsByBlock.remove(block);
+                }
+            }
+        }
+    }
+
+    private List<PatientDuplicatePair> pairs(List<Entry> block) {
+        List<PatientDuplicatePair> pairs = new ArrayList<>();
+        for (int i = 0; i < block.size(); i++) {
+            for (int j = i + 1; j < block.size(); j++) {
+                Entry a = block.get(i);
+                Entry b = block.get(j);
+                double score = score(a, b);
+                if (score >= threshold) {
+                    pairs.add(a.id() < b.id() ? new PatientDuplicatePair(a.id(), b.id(), score) : new PatientDuplicatePair(b.id(), a.id(), score));
+                }
+            }
+        }
+        return pairs;
+    }
+
+    private Entry entry(Patient patient) {
+        String lastName = String.join(" ", NameMatching.tokens(patient.getLastName()));
+        String firstName = String.join(" ", NameMatching.tokens(patient.getFirstName()));
+        String phoneNumber = patient.getPhoneNumber() == null ? "" : patient.getPhoneNumber().replaceAll("\\D", "");
+        return new Entry(patient.getId(), patient.getLastName(), patient.getFirstName(), patient.getDateOfBirth(),
+                lastName, firstName, phoneNumber, phoneticKey(lastName), phoneticKey(firstName));
+    }
+
+    private String phoneticKey(String name) {
+        String key = doubleMetaphone.doubleMetaphone(name.replace(" ", ""));
+        return key == null || key.isEmpty() ? name : key;
+    }
+
+    /**
+     * Weighted similarity of two patients, from 0 to 1.
+     */
+    static double score(Entry a, Entry b) {
+        return LAST_NAME_WEIGHT * nameSimilarity(a.lastName(), b.lastName(), a.lastNameKey().equals(b.lastNameKey()))
+                + FIRST_NAME_WEIGHT * nameSimilarity(a.firstName(), b.firstName(), a.firstNameKey().equals(b.firstNameKey()))
+                + DATE_OF_BIRTH_WEIGHT * dateOfBirthSimilarity(a.dateOfBirth(), b.dateOfBirth())
+                + PHONE_NUMBER_WEIGHT * phoneNumberSimilarity(a.phoneNumber(), b.phoneNumber());
+    }
+
+    private static double nameSimilarity(String a, String b, boolean sameSound) {
+        int length = Math.max(a.length(), b.length());
+        if (length == 0) {
+            return 0.0;
+        }
+        double similarity = 1.0 - (double) NameMatching.editDistance(a, b, length) / length;
+        return sameSound ? Math.max(similarity, SAME_SOUND_SIMILARITY) : similarity;
+    }
+
+    /**
+     * 1 for the same date, 0.5 for a typo: two of year, month and day equal, or day and month swapped.
+     */
+    private static double dateOfBirthSimilarity(LocalDate a, LocalDate b) {
+        if (a == null || b == null) {
+            return 0.0;
+        }
+        if (a.equals(b)) {
+            return 1.0;
+        }
+        int sameFields = (a.getYear() == b.getYear() ? 1 : 0) + (a.getMonthValue() == b.getMonthValue() ? 1 : 0)
+                + (a.getDayOfMonth() == b.getDayOfMonth() ? 1 : 0);
+        boolean swapped = a.getYear() == b.getYear() && a.getMonthValue() == b.getDayOfMonth() && a.getDayOfMonth() == b.getMonthValue();
+        return sameFields == 2 || swapped ? 0.5 : 0.0;
+    }
+
+    private static double phoneNumberSimilarity(String a, String b) {
+        if (a.isEmpty() || b.isEmpty()) {
+            return 0.0;
+        }
+        if (a.equals(b)) {
+            return 1.0;
+        }
+        return NameMatching.editDistance(a, b, 1) <= 1 ? 0.5 : 0.0;
+    }
+
+    record Entry(Long id, String rawLastName, String rawFirstName, LocalDate dateOfBirth,
+                 String lastName, String firstName, String phoneNumber, String lastNameKey, String firstNameKey) {
+        List<String> blocks() {
+            return List.of(lastNameKey + "|" + dateOfBirth, lastNameKey + "|" + firstNameKey);
+        }
+
+        PatientDuplicateCandidate toCandidate(double score) {
+            return new PatientDuplicateCandidate(id, rawLastName, rawFirstName, dateOfBirth, score);
+        }
+    }
+}
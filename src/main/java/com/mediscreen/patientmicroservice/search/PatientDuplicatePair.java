@@ -0,0 +1,11 @@
+package com.mediscreen.patientmicroservice.search;
+
+/**
+ * Two patients that may be the same person.
+ *
+ * @param id      The ID of the first patient, the lower one.
+ * @param otherId The ID of the second patient.
+ * @param score   The similarity, from 0 to 1.
+ */
+public record PatientDuplicatePair(Long id, Long otherId, double score) {
+}
@@ -0,0 +1,15 @@
+package com.mediscreen.patientmicroservice.search;
+
+import java.time.LocalDate;
+
+/**
+ * A patient matching a name search.
+ *
+ * @param id          The ID of the patient.
+ * @param lastName    The lastName of the patient.
+ * @param firstName   The firstName of the patient.
+ * @param dateOfBirth The date of birth of the patient.
+ * @param score       The relevance of the match, higher is better.
+ */
+public record PatientSearchHit(Long id, String lastName, String firstName, LocalDate dateOfBirth, double score) {
+}
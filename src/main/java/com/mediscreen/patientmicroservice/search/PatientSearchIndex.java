@@ -0,0 +1,219 @@
+package com.mediscreen.patientmicroservice.search;
+
+import com.mediscreen.patientmicroservice.domain.Patient;
+import com.mediscreen.patientmicroservice.repository.PatientRepository;
+import com.mediscreen.patientmicroservice.service.PatientChangeEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory index of patient names, for prefix and typo-tolerant searches on lastName and firstName.
+ * Built at startup from the database, then kept current by the PatientChangeEvent published after each commit.
+ * <p>
+ * Names are split into normalized tokens. A sorted token map answers prefix queries, and a trigram to token map
+ * gives the candidate tokens whose edit distance is then checked, so a search never scans all patients.
+ */
+@Component
+public class PatientSearchIndex {
+    private static final Logger logger = LoggerFactory.getLogger(PatientSearchIndex.class);
+    private static final int PAGE_SIZE = 1000;
+    private static final double EXACT_SCORE = 1.0;
+    private static final double PREFIX_SCORE = 0.8;
+    private static final double FUZZY_SCORE = 0.6;
+
+    private final PatientRepository patientRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final NavigableMap<String, Set<Long>> idsByToken = new TreeMap<>();
+    private final Map<String, Set<String>> tokensByTrigram = new HashMap<>();
+
+    public PatientSearchIndex(PatientRepository patientRepository) {
+        this.patientRepository = patientRepository;
+    }
+
+    /**
+     * Loads all patients, one keyset page at a time, once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        logger.debug("rebuild from PatientSearchIndex starts here");
+        long afterId = 0L;
+        int count = 0;
+        List<Patient> page;
+        do {
+            page = patientRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, PAGE_SIZE));
+            page.forEach(this::put);
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getId();
+            }
+            count += page.size();
+        } while (page.size() == PAGE_SIZE);
+        logger.info("{} Patients have been indexed for search, from PatientSearchIndex", count);
+    }
+
+    /**
+     * Applies a committed change to the index.
+     *
+     * @param event the change
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPatientChange(PatientChangeEvent event) {
+        if (event.type() == PatientChangeEvent.Type.DELETED) {
+            remove(event.patientId());
+        } else if (event.current() != null) {
+            put(event.current());
+        }
+    }
+
+    /**
+     * Searches patients whose lastName or firstName starts with, or is a few typos away from, each word of the query.
+     *
+     * @param query words typed by the user
+     * @param limit maximum number of hits
+     * @return the best hits first
+     */
+    public List<PatientSearchHit> search(String query, int limit) {
+        List<String> queryTokens = NameMatching.tokens(query);
+        if (queryTokens.isEmpty()) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            Map<Long, Double> scores = new HashMap<>();
+            for (String queryToken : queryTokens) {
+                match(queryToken).forEach((id, score) -> scores.merge(id, score, Double::sum));
+            }
+            return scores.entrySet().stream()
+                    .map(score -> entries.get(score.getKey()).toHit(score.getValue()))
+                    .sorted(Comparator.comparingDouble(PatientSearchHit::score).reversed()
+                            .thenComparing(PatientSearchHit::lastName)
+                            .thenComparing(PatientSearchHit::id))
+                    .limit(limit)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of indexed patients
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void put(Patient patient) {
+        Set<String> tokens = new HashSet<>(NameMatching.tokens(patient.getLastName()));
+        tokens.addAll(NameMatching.tokens(patient.getFirstName()));
+        Entry entry = new Entry(patient.getId(), patient.getLastName(), patient.getFirstName(), patient.getDateOfBirth(), Set.copyOf(tokens));
+
+        lock.writeLock().lock();
+        try {
+            Entry previous = entries.put(entry.id(), entry);
+            if (previous != null) {
+                unindex(previous);
+            }
+            for (String token : entry.tokens()) {
+                Set<Long> ids = idsByToken.computeIfAbsent(token, newToken -> {
+                    NameMatching.trigrams(newToken).forEach(trigram -> tokensByTrigram.computeIfAbsent(trigram, t -> new HashSet<>()).add(newToken));
+                    return new HashSet<>();
+                });
+                ids.add(entry.id());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            Entry previous = entries.remove(id);
+            if (previous != null) {
+                unindex(previous);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void unindex(Entry entry) {
+        for (String token : entry.tokens()) {
+            Set<Long> ids = idsByToken.get(token);
+            if (ids == null) {
+                continue;
+            }
+            ids.remove(entry.id());
+            if (ids.isEmpty()) {
+                idsByToken.remove(token);
+                for (String trigram : NameMatching.trigrams(token)) {
+                    Set<String> tokens = tokensByTrigram.get(trigram);
+                    tokens.remove(token);
+                    if (tokens.isEmpty()) {
+                        tokensByTrigram.remove(trigram);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Best score of each patient for one query word: exact token, token prefix, or within the edit distance.
+     */
+    private Map<Long, Double> match(String queryToken) {
+        Map<Long, Double> scores = new HashMap<>();
+        for (Map.Entry<String, Set<Long>> token : idsByToken.subMap(queryToken, true, queryToken + Character.MAX_VALUE, false).entrySet()) {
+            double score = token.getKey().equals(queryToken) ? EXACT_SCORE : PREFIX_SCORE;
+            token.getValue().forEach(id -> scores.merge(id, score, Math::max));
+        }
+
+        int maxDistance = NameMatching.maxEditDistance(queryToken);
+        if (maxDistance == 0) {
+            return scores;
+        }
+        Set<String> candidates = new HashSet<>();
+        for (String trigram : NameMatching.trigrams(queryToken)) {
+            candidates.addAll(tokensByTrigram.getOrDefault(trigram, Set.of()));
+        }
+        for (String candidate : candidates) {
+            // compare with the whole token and with its beginning, so that a typo in a partial name still matches
+            String candidatePrefix = candidate.substring(0, Math.min(candidate.length(), queryToken.length()));
+            int distance = Math.min(
+                    NameMatching.editDistance(queryToken, candidate, maxDistance),
+                    NameMatching.editDistance(queryToken, candidatePrefix, maxDistance));
+            if (distance > 0 && distance <= maxDistance) {
+                double score = FUZZY_SCORE - 0.2 * (distance - 1);
+                idsByToken.get(candidate).forEach(id -> scores.merge(id, score, Math::max));
+            }
+        }
+        return scores;
+    }
+
+    private record Entry(Long id, String lastName, String firstName, LocalDate dateOfBirth, Set<String> tokens) {
+        PatientSearchHit toHit(double score) {
+            return new PatientSearchHit(id, lastName, firstName, dateOfBirth, score);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.mediscreen.patientmicroservice.service;
+
+/**
+ * Statistics of one in-process cache.
+ *
+ * @param name          The name of the cache.
+ * @param size          The approximate number of entries.
+ * @param hitCount      The number of lookups that found an entry.
+ * @param missCount     The number of lookups that found no entry.
+ * @param hitRate       The ratio of hits to lookups.
+ * @param evictionCount The number of entries evicted because of size or expiration.
+ */
+public record CacheStatistics(String name, long size, long hitCount, long missCount, double hitRate, long evictionCount) {
+}
@@ -0,0 +1,173 @@
+package com.mediscreen.patientmicroservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.mediscreen.patientmicroservice.domain.Patient;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Bounded in-process cache of patients, keyed by ID, with a secondary lastName to ID mapping.
+ * Entries expire after a time-to-live and are evicted when the maximum size is reached.
+ * Patients are copied in and out, and only the newest version of a patient is kept:
+ * a reader that loaded a patient before a change committed cannot put its older version back.
+ * As a MeterBinder, its statistics are also published as cache metrics.
+ */
+@Component
+public class PatientCache implements MeterBinder {
+    private final Cache<Long, Patient> patientsById;
+    private final Cache<String, Long> idsByLastName;
+    /**
+     * Lowest version that may be cached again, set when a change commits. It expires with the TTL of the patient it fences
+     * and may be evicted when the maximum size is reached, so it only holds off the readers still in flight at the commit.
+     */
+    private final Cache<Long, Long> minVersionsById;
+
+    public PatientCache(@Value("${patient.cache.maximum-size:10000}") long maximumSize,
+                        @Value("${patient.cache.time-to-live:10m}") Duration timeToLive) {
+        this.patientsById = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive)
+                .recordStats()
+                .build();
+        this.idsByLastName = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive)
+                .recordStats()
+                .build();
+        this.minVersionsById = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive)
+                .build();
+    }
+
+    /**
+     * Retrieves a cached patient by his ID.
+     *
+     * @param id Patient ID
+     * @return a copy of the cached patient, or an empty optional if not cached
+     */
+    public Optional<Patient> getById(Long id) {
+        return Optional.ofNullable(patientsById.getIfPresent(id)).map(Patient::new);
+    }
+
+    /**
+     * Retrieves a cached patient by his lastName, through the lastName to ID mapping.
+     *
+     * @param lastName Patient lastName
+     * @return a copy of the cached patient, or an empty optional if not cached
+     */
+    public Optional<Patient> getByLastName(String lastName) {
+        Long id = idsByLastName.getIfPresent(lastName);
+        if (id == null) {
+            return Optional.empty();
+        }
+        Patient patient = patientsById.getIfPresent(id);
+        if (patient == null || !lastName.equals(patient.getLastName())) {
+            idsByLastName.invalidate(lastName);
+            return Optional.empty();
+        }
+        return Optional.of(new Patient(patient));
+    }
+
+    /**
+     * Caches a copy of the given patient, so later changes to the entity do not leak into the cache.
+     * The patient is ignored if a newer version is cached, or if a committed change made its version stale.
+     *
+     * @param patient Patient loaded from the database
+     */
+    public void put(Patient patient) {
+        Patient copy = new Patient(patient);
+        // checked and stored under the lock of the ID, which fence also takes: a fence set in between is not missed
+        Patient cached = patientsById.asMap().compute(copy.getId(), (id, previous) -> {
+            Long minVersion = minVersionsById.getIfPresent(id);
+            if (minVersion != null && versionOf(copy) < minVersion) {
+                return previous;
+            }
+            return previous == null || versionOf(copy) >= versionOf(previous) ? copy : previous;
+        });
+        if (cached == copy) {
+            idsByLastName.put(copy.getLastName(), copy.getId());
+        }
+    }
+
+    /**
+     * Evicts a patient and his lastName mappings now, and again once the current transaction completes.
+     * A reader may have loaded the patient before the commit and put it after the evictions:
+     * once the change is committed, versions older than the committed one are refused by put.
+     *
+     * @param id        Patient ID, may be null
+     * @param version   version committed by the change, null if unknown
+     * @param lastNames lastNames to evict, null values are ignored
+     */
+    public void evict(Long id, Long version, String... lastNames) {
+        invalidate(id, lastNames);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        fence(id, version);
+                    }
+                    invalidate(id, lastNames);
+                }
+            });
+        } else {
+            fence(id, version);
+        }
+    }
+
+    /**
+     * @return hit, miss and eviction statistics of both caches
+     */
+    public List<CacheStatistics> getStatistics() {
+        return List.of(
+                statistics("patientsById", patientsById),
+                statistics("idsByLastName", idsByLastName));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, patientsById, "patientsById");
+        CaffeineCacheMetrics.monitor(registry, idsByLastName, "idsByLastName");
+    }
+
+    private void fence(Long id, Long version) {
+        if (id != null && version != null) {
+            patientsById.asMap().compute(id, (key, cached) -> {
+                minVersionsById.asMap().merge(key, version, Math::max);
+                return cached != null && versionOf(cached) >= version ? cached : null;
+            });
+        }
+    }
+
+    private static long versionOf(Patient patient) {
+        return patient.getVersion() != null ? patient.getVersion() : 0L;
+    }
+
+    private void invalidate(Long id, String... lastNames) {
+        if (id != null) {
+            patientsById.invalidate(id);
+        }
+        for (String lastName : lastNames) {
+            if (lastName != null) {
+                idsByLastName.invalidate(lastName);
+            }
+        }
+    }
+
+    private static CacheStatistics statistics(String name, Cache<?, ?> cache) {
+        CacheStats stats = cache.stats();
+        return new CacheStatistics(name, cache.estimatedSize(), stats.hitCount(), stats.missCount(), stats.hitRate(), stats.evictionCount());
+    }
+}
@@ -0,0 +1,32 @@
+package com.mediscreen.patientmicroservice.service;
+
+import com.mediscreen.patientmicroservice.domain.Patient;
+import com.mediscreen.patientmicroservice.domain.PatientSummary;
+
+/**
+ * Published by PatientServiceImpl for every created, updated or deleted patient.
+ * Listeners that keep in-memory views up to date should react after commit, with @TransactionalEventListener.
+ *
+ * @param type      The kind of change.
+ * @param patientId The ID of the changed patient.
+ * @param previous  The identity columns before the change, with the sex and the date of birth, null for a creation
+ *                  or when it is unknown (an If-Match update of a patient that was not cached).
+ * @param current   The state after the change, null for a deletion.
+ */
+public record PatientChangeEvent(Type type, Long patientId, PatientSummary previous, Patient current) {
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    public static PatientChangeEvent created(Patient current) {
+        return new PatientChangeEvent(Type.CREATED, current.getId(), null, current);
+    }
+
+    public static PatientChangeEvent updated(Long patientId, PatientSummary previous, Patient current) {
+        return new PatientChangeEvent(Type.UPDATED, patientId, previous, current);
+    }
+
+    public static PatientChangeEvent deleted(Long patientId, PatientSummary previous) {
+        return new PatientChangeEvent(Type.DELETED, patientId, previous, null);
+    }
+}
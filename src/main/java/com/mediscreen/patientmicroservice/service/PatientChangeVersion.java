@@ -0,0 +1,29 @@
+package com.mediscreen.patientmicroservice.service;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Table-level version of the patients, incremented after each committed change made through this instance.
+ * Prefixed with the startup time, so a version handed out before a restart never matches a new one.
+ * It does not see the changes made by the other instances: it keys in-process state only, never a version given to clients.
+ */
+@Component
+public class PatientChangeVersion {
+    private final long epoch = System.currentTimeMillis();
+    private final AtomicLong changes = new AtomicLong();
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPatientChange(PatientChangeEvent event) {
+        changes.incrementAndGet();
+    }
+
+    /**
+     * @return the current version, to read before the patients it describes
+     */
+    public String current() {
+        return epoch + "-" + changes.get();
+    }
+}
@@ -0,0 +1,19 @@
+package com.mediscreen.patientmicroservice.service;
+
+import com.mediscreen.patientmicroservice.domain.Patient;
+import com.mediscreen.patientmicroservice.domain.PatientTombstone;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * One batch of changes, ordered by (time of the change, patient ID).
+ *
+ * @param changed Patients created or updated after the cursor.
+ * @param deleted Patients deleted after the cursor.
+ * @param since   Cursor of the next batch: time of the last change of this batch, or the requested one if there is none.
+ * @param afterId Cursor of the next batch: patient ID of the last change of this batch, or the requested one if there is none.
+ * @param hasMore Whether more changes are already available after this batch.
+ */
+public record PatientChanges(List<Patient> changed, List<PatientTombstone> deleted, Instant since, Long afterId, boolean hasMore) {
+}
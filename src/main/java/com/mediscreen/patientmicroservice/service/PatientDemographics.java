@@ -0,0 +1,146 @@
+package com.mediscreen.patientmicroservice.service;
+
+import com.mediscreen.patientmicroservice.domain.Patient;
+import com.mediscreen.patientmicroservice.domain.PatientCount;
+import com.mediscreen.patientmicroservice.repository.PatientRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * In-memory patient counts by sex and by date of birth, loaded with one grouped query at startup,
+ * then kept current by the PatientChangeEvent published after each commit.
+ * <p>
+ * Counts are kept by date of birth rather than by age, so they do not go stale as patients get older:
+ * the age bands are summed from them once a day, or after a change, and served as is in between.
+ * Updates and deletions carry the previous sex and date of birth when it is known. A change whose previous state is unknown
+ * can't be undone from the counts, they are then reloaded on the next read.
+ */
+@Component
+public class PatientDemographics {
+    private static final Logger logger = LoggerFactory.getLogger(PatientDemographics.class);
+    /**
+     * Lower bound of each age band, in years.
+     */
+    private static final int[] AGE_BANDS = {0, 18, 40, 65};
+
+    private final PatientRepository patientRepository;
+    private final Map<String, Long> countsBySex = new HashMap<>();
+    private final NavigableMap<LocalDate, Long> countsByDateOfBirth = new TreeMap<>();
+    private long total;
+    private boolean stale = true;
+    private long changes;
+    private PatientStats stats;
+
+    public PatientDemographics(PatientRepository patientRepository) {
+        this.patientRepository = patientRepository;
+    }
+
+    /**
+     * Loads the counts with one grouped query. Changes applied while the query runs make the result
+     * uncertain, it is then dropped and the counts stay stale.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reload() {
+        logger.debug("reload from PatientDemographics starts here");
+        long changesBefore;
+        synchronized (this) {
+            changesBefore = changes;
+        }
+        List<PatientCount> patientCounts = patientRepository.countBySexAndDateOfBirth();
+        synchronized (this) {
+            if (changes != changesBefore) {
+                logger.info("Patients changed while counted, counts are still stale, from PatientDemographics");
+                return;
+            }
+            countsBySex.clear();
+            countsByDateOfBirth.clear();
+            total = 0;
+            patientCounts.forEach(patientCount -> add(patientCount.sex(), patientCount.dateOfBirth(), patientCount.count()));
+            stale = false;
+            stats = null;
+            logger.info("{} Patients have been counted, from PatientDemographics", total);
+        }
+    }
+
+    /**
+     * Applies a committed change to the counts.
+     *
+     * @param event the change
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onPatientChange(PatientChangeEvent event) {
+        changes++;
+        stats = null;
+        if (event.type() != PatientChangeEvent.Type.CREATED) {
+            if (event.previous() == null) {
+                stale = true;
+                return;
+            }
+            add(event.previous().sex(), event.previous().dateOfBirth(), -1);
+        }
+        if (event.current() != null) {
+            add(event.current(), 1);
+        }
+    }
+
+    /**
+     * @return the counts, reloaded first if they are stale
+     */
+    public PatientStats getStats() {
+        boolean reload;
+        synchronized (this) {
+            reload = stale;
+        }
+        if (reload) {
+            reload();
+        }
+        synchronized (this) {
+            LocalDate today = LocalDate.now();
+            if (stats == null || !today.equals(stats.date())) {
+                stats = new PatientStats(today, total, Map.copyOf(countsBySex), countByAgeBand(today));
+            }
+            return stats;
+        }
+    }
+
+    private Map<String, Long> countByAgeBand(LocalDate today) {
+        Map<String, Long> countsByAgeBand = new LinkedHashMap<>();
+        for (int i = 0; i < AGE_BANDS.length; i++) {
+            // born on or before this date: at least the lower bound of the band
+            LocalDate youngest = today.minusYears(AGE_BANDS[i]);
+            NavigableMap<LocalDate, Long> band;
+            String name;
+            if (i + 1 < AGE_BANDS.length) {
+                band = countsByDateOfBirth.subMap(today.minusYears(AGE_BANDS[i + 1]), false, youngest, true);
+                name = AGE_BANDS[i] + "-" + (AGE_BANDS[i + 1] - 1);
+            } else {
+                band = countsByDateOfBirth.headMap(youngest, true);
+                name = AGE_BANDS[i] + "+";
+            }
+            countsByAgeBand.put(name, band.values().stream().mapToLong(Long::longValue).sum());
+        }
+        return countsByAgeBand;
+    }
+
+    private void add(Patient patient, long count) {
+        add(patient.getSex(), patient.getDateOfBirth(), count);
+    }
+
+    private void add(String sex, LocalDate dateOfBirth, long count) {
+        total += count;
+        countsBySex.merge(sex, count, (a, b) -> a + b == 0 ? null : a + b);
+        countsByDateOfBirth.merge(dateOfBirth, count, (a, b) -> a + b == 0 ? null : a + b);
+    }
+}
@@ -0,0 +1,14 @@
+package com.mediscreen.patientmicroservice.service;
+
+import com.mediscreen.patientmicroservice.domain.Patient;
+
+import java.util.List;
+
+/**
+ * Result of a lookup of patients by IDs.
+ *
+ * @param patients   The patients found, in the order of the requested IDs.
+ * @param missingIds The requested IDs with no patient, in the order of the request.
+ */
+public record PatientLookup(List<Patient> patients, List<Long> missingIds) {
+}
@@ -1,14 +1,37 @@
 package com.mediscreen.patientmicroservice.service;
 
 import com.mediscreen.patientmicroservice.domain.Patient;
+import com.mediscreen.patientmicroservice.domain.PatientSummary;
+import com.mediscreen.patientmicroservice.search.PatientDuplicateCandidate;
+import com.mediscreen.patientmicroservice.search.PatientDuplicatePair;
+import com.mediscreen.patientmicroservice.search.PatientSearchHit;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface PatientService {
     List<Patient> getPatients();
+    List<Patient> getPatientsAfter(Long afterId, int limit);
+    void exportPatients(Consumer<Patient> consumer);
+    String getPatientsVersion();
+    Long getPatientVersion(Long id);
     Patient getPatientById(Long id);
+    PatientLookup getPatientsByIds(List<Long> ids);
+    PatientChanges getPatientChanges(Instant since, Long afterId, int limit);
+    List<PatientSummary> getPatientSummaries();
+    List<PatientSummary> getPatientSummariesAfter(Long afterId, int limit);
+    PatientSummary getPatientSummaryById(Long id);
+    PatientSummary getPatientSummaryByLastName(String lastName);
     Patient getPatientByLastName(String lastName);
     Patient addPatient(Patient patient);
+    List<Patient> addPatients(List<Patient> patients);
     Patient updatePatientById(Long id, Patient patient);
-    Patient deletePatientById(Long id);
+    Patient updatePatientById(Long id, Long version, Patient patient);
+    PatientSummary deletePatientById(Long id);
+    List<PatientSearchHit> searchPatients(String query, int limit);
+    List<PatientDuplicateCandidate> checkDuplicates(Patient patient, int limit);
+    List<PatientDuplicatePair> findDuplicates(int limit);
+    List<CacheStatistics> getCacheStatistics();
+    PatientStats getPatientStats();
 }
@@ -1,25 +1,93 @@
 package com.mediscreen.patientmicroservice.service;
 
 import com.mediscreen.patientmicroservice.domain.Patient;
+import com.mediscreen.patientmicroservice.domain.PatientSummary;
+import com.mediscreen.patientmicroservice.domain.PatientTombstone;
 import com.mediscreen.patientmicroservice.exceptions.PatientAlreadyExistException;
 import com.mediscreen.patientmicroservice.exceptions.PatientNotFoundException;
+import com.mediscreen.patientmicroservice.exceptions.PatientValidationException;
+import com.mediscreen.patientmicroservice.exceptions.PatientVersionMismatchException;
 import com.mediscreen.patientmicroservice.repository.PatientRepository;
+import com.mediscreen.patientmicroservice.repository.PatientTombstoneRepository;
+import com.mediscreen.patientmicroservice.search.PatientDuplicateCandidate;
+import com.mediscreen.patientmicroservice.search.PatientDuplicateIndex;
+import com.mediscreen.patientmicroservice.search.PatientDuplicatePair;
+import com.mediscreen.patientmicroservice.search.PatientSearchHit;
+import com.mediscreen.patientmicroservice.search.PatientSearchIndex;
+import org.hibernate.exception.ConstraintViolationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
+/**
+ * Transactions start and end here, the web layer has none: a DB connection is only held during a service call.
+ * Writes run in read-write transactions, on the primary DB.
+ * Reads run in read-only transactions, which go to the replica when one is configured (see DataSourceRoutingConfiguration).
+ */
 @Service
 @Transactional
 public class PatientServiceImpl implements PatientService {
     private final static Logger logger = LoggerFactory.getLogger(PatientServiceImpl.class);
+    /**
+     * Same value as hibernate.jdbc.batch_size: one flush sends one JDBC batch per chunk.
+     */
+    private static final int BATCH_SIZE = 50;
+    /**
+     * Maximum number of values bound to one IN list.
+     */
+    private static final int IN_LIST_SIZE = 1000;
     private final PatientRepository patientRepository;
+    private final EntityManager entityManager;
+    private final PatientCache patientCache;
+    private final Validator validator;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PatientSearchIndex patientSearchIndex;
+    private final PatientChangeVersion patientChangeVersion;
+    private final PatientTombstoneRepository patientTombstoneRepository;
+    private final PatientDemographics patientDemographics;
+    private final PatientDuplicateIndex patientDuplicateIndex;
+    private final SingleFlight<PatientLoadKey<Long>, Patient> loadsById = new SingleFlight<>();
+    private final SingleFlight<PatientLoadKey<String>, Patient> loadsByLastName = new SingleFlight<>();
 
-    public PatientServiceImpl(PatientRepository patientRepository) {
+    public PatientServiceImpl(PatientRepository patientRepository, EntityManager entityManager, PatientCache patientCache,
+                              Validator validator, ApplicationEventPublisher eventPublisher, PatientSearchIndex patientSearchIndex,
+                              PatientChangeVersion patientChangeVersion, PatientTombstoneRepository patientTombstoneRepository,
+                              PatientDemographics patientDemographics, PatientDuplicateIndex patientDuplicateIndex) {
         this.patientRepository = patientRepository;
+        this.entityManager = entityManager;
+        this.patientCache = patientCache;
+        this.validator = validator;
+        this.eventPublisher = eventPublisher;
+        this.patientSearchIndex = patientSearchIndex;
+        this.patientChangeVersion = patientChangeVersion;
+        this.patientTombstoneRepository = patientTombstoneRepository;
+        this.patientDemographics = patientDemographics;
+        this.patientDuplicateIndex = patientDuplicateIndex;
     }
 
     /**
@@ -28,6 +96,7 @@ public class PatientServiceImpl implements PatientService {
      * @return all patients
      */
     @Override
+    @Transactional(readOnly = true)
     public List<Patient> getPatients() {
         logger.debug("getPatients from PatientServiceImpl starts here");
         List<Patient> patients = patientRepository.findAll();
@@ -36,43 +105,298 @@ public class PatientServiceImpl implements PatientService {
     }
 
     /**
-     * Retrieves a patient from the database by hid ID.
+     * Retrieves one page of patients using keyset pagination on the patient ID.
+     *
+     * @param afterId cursor, only patients with an ID strictly greater than this one are returned
+     * @param limit   maximum number of patients to return
+     * @return patients ordered by ID
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<Patient> getPatientsAfter(Long afterId, int limit) {
+        logger.debug("getPatientsAfter from PatientServiceImpl starts here with afterId:{{}} and limit:{{}}", afterId, limit);
+        List<Patient> patients = patientRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, limit));
+        logger.info("{} Patients after id:{{}} have been successfully retrieved, from PatientServiceImpl", patients.size(), afterId);
+        return patients;
+    }
+
+    /**
+     * Streams all patients, ordered by ID, to the given consumer.
+     * Each patient is detached once consumed, so memory stays flat whatever the size of the table.
+     *
+     * @param consumer receives every patient, one at a time
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void exportPatients(Consumer<Patient> consumer) {
+        logger.debug("exportPatients from PatientServiceImpl starts here");
+        long count = 0;
+        try (Stream<Patient> patients = patientRepository.streamAll()) {
+            Iterator<Patient> iterator = patients.iterator();
+            while (iterator.hasNext()) {
+                Patient patient = iterator.next();
+                consumer.accept(patient);
+                entityManager.detach(patient);
+                count++;
+            }
+        }
+        logger.info("{} Patients have been successfully exported, from PatientServiceImpl", count);
+    }
+
+    /**
+     * Retrieves the version of the whole patient list, which changes after each committed change of any patient.
+     * It is read from the database, so every instance gives the same version, with two reads of the end of an index:
+     * a creation or an update moves the last updatedAt, a deletion the last deletedAt of the tombstones.
+     *
+     * @return version of the patient list
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public String getPatientsVersion() {
+        return micros(patientRepository.findLastUpdatedAt()) + "-" + micros(patientTombstoneRepository.findLastDeletedAt());
+    }
+
+    /**
+     * Retrieves the version of a patient, from the cache if present, otherwise with a query on the version column only.
+     *
+     * @param id ID of the patient
+     * @return the version of the patient with the given ID
+     * @throws PatientNotFoundException if no patient is found with the given ID.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Long getPatientVersion(Long id) {
+        logger.debug("getPatientVersion from PatientServiceImpl starts here with id:{{}}", id);
+        Optional<Patient> cachedPatient = patientCache.getById(id);
+        if (cachedPatient.isPresent()) {
+            return cachedPatient.get().getVersion();
+        }
+        return patientRepository.findVersionById(id).orElseThrow(() -> {
+            logger.error("Patient with id:{{}} doesn't exist in DB!, getPatientVersion, from PatientServiceImpl", id);
+            return new PatientNotFoundException("Patient with id:{%d} doesn't exist in DB!".formatted(id));
+        });
+    }
+
+    /**
+     * Retrieves a patient by hid ID, from the cache if present, otherwise from the database.
+     * Concurrent misses on the same ID share one query, see {@link #load(SingleFlight, Object, Supplier)}.
+     * No transaction is started here, so the callers waiting for a shared query do not hold a connection.
      *
      * @param id ID of the patient to retrieve.
      * @return the patient with the given ID.
      * @throws PatientNotFoundException if no patient is found with the given ID.
      */
     @Override
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     public Patient getPatientById(Long id) {
         logger.debug("getPatientById from PatientServiceImpl starts here");
-        Patient patient = findPatientById(id);
+        Optional<Patient> cachedPatient = patientCache.getById(id);
+        if (cachedPatient.isPresent()) {
+            logger.info("Patient with id:{{}} has been successfully retrieved from cache, form PatientServiceImpl", id);
+            return cachedPatient.get();
+        }
+        Patient patient = load(loadsById, id, () -> {
+            Patient loadedPatient = findPatientById(id);
+            patientCache.put(loadedPatient);
+            return loadedPatient;
+        });
         logger.info("Patient with id:{{}} has been successfully retrieved, form PatientServiceImpl", id);
         return patient;
     }
 
     /**
-     * Retrieves a patient from the database by his lastName.
+     * Retrieves the patients created, updated or deleted after the cursor, at most limit changes ordered by (time, patient ID).
+     * Both sources are read with a keyset query of limit + 1 rows then merged, so a batch costs the same whatever the table size.
+     * A transaction committed late can carry a time before the cursor: clients should poll with a cursor slightly in the past
+     * and apply changes idempotently.
+     *
+     * @param since   time of the last change already seen
+     * @param afterId patient ID of the last change already seen at that time
+     * @param limit   maximum number of changes
+     * @return the changes and the cursor of the next batch
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public PatientChanges getPatientChanges(Instant since, Long afterId, int limit) {
+        logger.debug("getPatientChanges from PatientServiceImpl starts here with since:{{}}, afterId:{{}} and limit:{{}}", since, afterId, limit);
+        PageRequest pageRequest = PageRequest.of(0, limit + 1);
+        List<Patient> patients = patientRepository.findChangedAfter(since, afterId, pageRequest);
+        List<PatientTombstone> tombstones = patientTombstoneRepository.findDeletedAfter(since, afterId, pageRequest);
+
+        List<Patient> changed = new ArrayList<>();
+        List<PatientTombstone> deleted = new ArrayList<>();
+        Instant cursorTime = since;
+        Long cursorId = afterId;
+        int p = 0;
+        int t = 0;
+        while (changed.size() + deleted.size() < limit && (p < patients.size() || t < tombstones.size())) {
+            if (t == tombstones.size() || p < patients.size()
+                    && isBefore(patients.get(p).getUpdatedAt(), patients.get(p).getId(), tombstones.get(t).getDeletedAt(), tombstones.get(t).getPatientId())) {
+                Patient patient = patients.get(p++);
+                changed.add(patient);
+                cursorTime = patient.getUpdatedAt();
+                cursorId = patient.getId();
+            } else {
+                PatientTombstone tombstone = tombstones.get(t++);
+                deleted.add(tombstone);
+                cursorTime = tombstone.getDeletedAt();
+                cursorId = tombstone.getPatientId();
+            }
+        }
+        boolean hasMore = p < patients.size() || t < tombstones.size();
+        logger.info("{} changed and {} deleted Patients have been successfully retrieved since:{{}}, from PatientServiceImpl", changed.size(), deleted.size(), since);
+        return new PatientChanges(changed, deleted, cursorTime, cursorId, hasMore);
+    }
+
+    private static boolean isBefore(Instant time, Long id, Instant otherTime, Long otherId) {
+        int comparison = time.compareTo(otherTime);
+        return comparison < 0 || comparison == 0 && id < otherId;
+    }
+
+    /**
+     * Retrieves patients by their IDs, from the cache when present, otherwise with one IN query per 1000 IDs.
+     * Patients loaded from the database are not put in the cache, so a large lookup does not evict the hot entries.
+     *
+     * @param ids IDs of the patients to retrieve, duplicates are ignored
+     * @return the patients found and the IDs with no patient, both in the order of the request
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public PatientLookup getPatientsByIds(List<Long> ids) {
+        logger.debug("getPatientsByIds from PatientServiceImpl starts here with {} ids", ids.size());
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        Map<Long, Patient> patientsById = new HashMap<>(distinctIds.size() * 2);
+        List<Long> idsToLoad = new ArrayList<>();
+        for (Long id : distinctIds) {
+            patientCache.getById(id).ifPresentOrElse(patient -> patientsById.put(id, patient), () -> idsToLoad.add(id));
+        }
+        for (int from = 0; from < idsToLoad.size(); from += IN_LIST_SIZE) {
+            patientRepository.findByIdIn(idsToLoad.subList(from, Math.min(from + IN_LIST_SIZE, idsToLoad.size())))
+                    .forEach(patient -> patientsById.put(patient.getId(), patient));
+        }
+
+        List<Patient> patients = new ArrayList<>(patientsById.size());
+        List<Long> missingIds = new ArrayList<>();
+        for (Long id : distinctIds) {
+            Patient patient = patientsById.get(id);
+            if (patient != null) {
+                patients.add(patient);
+            } else {
+                missingIds.add(id);
+            }
+        }
+        logger.info("{} Patients have been successfully retrieved by ids, {} missing, from PatientServiceImpl", patients.size(), missingIds.size());
+        return new PatientLookup(patients, missingIds);
+    }
+
+    /**
+     * Retrieves the summary of all patients, ordered by ID.
+     * Only the summary columns are selected, and nothing is tracked by the persistence context.
+     *
+     * @return summaries of all patients
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<PatientSummary> getPatientSummaries() {
+        logger.debug("getPatientSummaries from PatientServiceImpl starts here");
+        List<PatientSummary> patientSummaries = patientRepository.findAllSummaries();
+        logger.info("{} Patient summaries have been successfully retrieved, from PatientServiceImpl", patientSummaries.size());
+        return patientSummaries;
+    }
+
+    /**
+     * Retrieves the summary of one page of patients using keyset pagination on the patient ID.
+     *
+     * @param afterId cursor, only patients with an ID strictly greater than this one are returned
+     * @param limit   maximum number of patients to return
+     * @return summaries of patients ordered by ID
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<PatientSummary> getPatientSummariesAfter(Long afterId, int limit) {
+        logger.debug("getPatientSummariesAfter from PatientServiceImpl starts here with afterId:{{}} and limit:{{}}", afterId, limit);
+        List<PatientSummary> patientSummaries = patientRepository.findSummariesByIdGreaterThan(afterId, PageRequest.of(0, limit));
+        logger.info("{} Patient summaries after id:{{}} have been successfully retrieved, from PatientServiceImpl", patientSummaries.size(), afterId);
+        return patientSummaries;
+    }
+
+    /**
+     * Retrieves the summary of a patient by his ID, from the cache if present, otherwise from the summary columns only.
+     *
+     * @param id ID of the patient
+     * @return summary of the patient with the given ID
+     * @throws PatientNotFoundException if no patient is found with the given ID.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public PatientSummary getPatientSummaryById(Long id) {
+        logger.debug("getPatientSummaryById from PatientServiceImpl starts here with id:{{}}", id);
+        Optional<Patient> cachedPatient = patientCache.getById(id);
+        if (cachedPatient.isPresent()) {
+            return PatientSummary.of(cachedPatient.get());
+        }
+        return patientRepository.findSummaryById(id).orElseThrow(() -> {
+            logger.error("Patient with id:{{}} doesn't exist in DB!, getPatientSummaryById, from PatientServiceImpl", id);
+            return new PatientNotFoundException("Patient with id:{%d} doesn't exist in DB!".formatted(id));
+        });
+    }
+
+    /**
+     * Retrieves the summary of a patient by his lastName, from the cache if present, otherwise from the summary columns only.
+     *
+     * @param lastName lastName of the patient
+     * @return summary of the patient with the given lastName
+     * @throws PatientNotFoundException if no patient is found with the given lastName.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public PatientSummary getPatientSummaryByLastName(String lastName) {
+        logger.debug("getPatientSummaryByLastName from PatientServiceImpl starts here with lastName:{{}}", lastName);
+        Optional<Patient> cachedPatient = patientCache.getByLastName(lastName);
+        if (cachedPatient.isPresent()) {
+            return PatientSummary.of(cachedPatient.get());
+        }
+        return patientRepository.findSummaryByLastName(lastName).orElseThrow(() -> {
+            logger.error("Patient doesn't exist in DB with lastName:{{}}, getPatientSummaryByLastName, from PatientServiceImpl", lastName);
+            return new PatientNotFoundException("Patient with lastName:{%s} doesn't exist in DB!".formatted(lastName));
+        });
+    }
+
+    /**
+     * Retrieves a patient by his lastName, from the cache if present, otherwise from the database.
+     * Concurrent misses on the same lastName share one query, like {@link #getPatientById(Long)}.
      *
      * @param lastName lastName of the patient to retrieve
      * @return the patient object retrieved from the database
      * @throws PatientNotFoundException if a patient with the given last name is not found in the database
      */
     @Override
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     public Patient getPatientByLastName(String lastName) {
         logger.debug("getPatientByLastName from PatientServiceImpl starts here");
-        Optional<Patient> patient = findByLastName(lastName);
-
-        if (patient.isEmpty()) {
-            logger.error("Patient doesn't exist in DB with lastName:{{}}", lastName);
-            //throw new PatientNotFoundException(String.format("Patient with lastName:{%s} doesn't exist in DB!", lastName));
-            throw new PatientNotFoundException("Patient with lastName:{%s} doesn't exist in DB!".formatted(lastName));
+        Optional<Patient> cachedPatient = patientCache.getByLastName(lastName);
+        if (cachedPatient.isPresent()) {
+            logger.info("Patient has been retrieved successfully from cache by lastName:{{}}, from PatientServiceImpl", lastName);
+            return cachedPatient.get();
         }
+        Patient patient = load(loadsByLastName, lastName, () -> {
+            Optional<Patient> loadedPatient = findByLastName(lastName);
+            if (loadedPatient.isEmpty()) {
+                logger.error("Patient doesn't exist in DB with lastName:{{}}", lastName);
+                //throw new PatientNotFoundException(String.format("Patient with lastName:{%s} doesn't exist in DB!", lastName));
+                throw new PatientNotFoundException("Patient with lastName:{%s} doesn't exist in DB!".formatted(lastName));
+            }
+            patientCache.put(loadedPatient.get());
+            return loadedPatient.get();
+        });
         logger.info("Patient has been retrieved successfully by lastName:{{}}, from PatientServiceImpl", lastName);
-        return patient.get();
+        return patient;
     }
 
     /**
      * Adds a new patient to the database if the patient does not exist.
+     * The patient is inserted right away, the unique constraint on lastName rejects an existing lastName,
+     * also when the same patient is added concurrently.
      *
      * @param patient the patient to be added to the database
      * @return added patient
@@ -81,17 +405,84 @@ public class PatientServiceImpl implements PatientService {
     @Override
     public Patient addPatient(Patient patient) {
         logger.debug("addPatient from PatientServiceImpl starts here");
-        Optional<Patient> checkPatient = findByLastName(patient.getLastName());
-        if (checkPatient.isPresent()) {
+        Patient patientSaved;
+        try {
+            // flushed to get the constraint violation here rather than at commit
+            patientSaved = patientRepository.saveAndFlush(patient);
+        } catch (DataIntegrityViolationException e) {
+            if (!isLastNameViolation(e)) {
+                throw e;
+            }
             logger.error("Patient with lastName:{{}} already exists in DB", patient.getLastName());
-            //throw new PatientAlreadyExistException(String.format("Patient with lastName:{%s} already exits in DB", patient.getLastName()));
             throw new PatientAlreadyExistException("Patient with lastName:{%s} already exits in DB".formatted(patient.getLastName()));
         }
-        Patient patientSaved = patientRepository.save(patient);
+        patientCache.evict(patientSaved.getId(), patientSaved.getVersion(), patientSaved.getLastName());
+        eventPublisher.publishEvent(PatientChangeEvent.created(patientSaved));
         logger.info("Patient with lastName:{{}} has been successfully saved in DB!, from PatientServiceImpl", patient.getLastName());
         return patientSaved;
     }
 
+    /**
+     * Adds new patients to the database in JDBC batches, all or nothing.
+     * All patients are validated and the lastName uniqueness is checked with one set-based query per 1000 names
+     * before anything is inserted.
+     *
+     * @param patients the patients to be added to the database
+     * @return added patients
+     * @throws PatientValidationException   if at least one patient is not valid
+     * @throws PatientAlreadyExistException if a lastName is duplicated in the batch or already exists in the database
+     */
+    @Override
+    public List<Patient> addPatients(List<Patient> patients) {
+        logger.debug("addPatients from PatientServiceImpl starts here with {} patients", patients.size());
+        List<String> errors = new ArrayList<>();
+        for (int i = 0; i < patients.size(); i++) {
+            for (ConstraintViolation<Patient> violation : validator.validate(patients.get(i))) {
+                errors.add("Patient #%d %s: %s".formatted(i, violation.getPropertyPath(), violation.getMessage()));
+            }
+        }
+        if (!errors.isEmpty()) {
+            logger.error("{} validation errors in the batch of patients, from PatientServiceImpl", errors.size());
+            throw new PatientValidationException("Patients are not valid", errors);
+        }
+
+        Set<String> lastNames = new LinkedHashSet<>();
+        Set<String> duplicatedLastNames = new LinkedHashSet<>();
+        for (Patient patient : patients) {
+            if (!lastNames.add(patient.getLastName())) {
+                duplicatedLastNames.add(patient.getLastName());
+            }
+        }
+        List<String> names = new ArrayList<>(lastNames);
+        for (int from = 0; from < names.size(); from += IN_LIST_SIZE) {
+            duplicatedLastNames.addAll(patientRepository.findExistingLastNames(names.subList(from, Math.min(from + IN_LIST_SIZE, names.size()))));
+        }
+        if (!duplicatedLastNames.isEmpty()) {
+            logger.error("Patients with lastName:{{}} are duplicated or already exist in DB", duplicatedLastNames);
+            throw new PatientAlreadyExistException("Patients with lastName:{%s} already exist in DB".formatted(String.join(", ", duplicatedLastNames)));
+        }
+
+        List<Patient> patientsSaved = new ArrayList<>(patients.size());
+        try {
+            for (int from = 0; from < patients.size(); from += BATCH_SIZE) {
+                patientsSaved.addAll(patientRepository.saveAll(patients.subList(from, Math.min(from + BATCH_SIZE, patients.size()))));
+                // send the batch and keep the persistence context small
+                entityManager.flush();
+                entityManager.clear();
+            }
+        } catch (DataIntegrityViolationException | PersistenceException e) {
+            // a lastName inserted concurrently, since the check above; the EntityManager flush is not translated by Spring
+            if (!isLastNameViolation(e)) {
+                throw e;
+            }
+            logger.error("A lastName of the batch has been inserted concurrently in DB, from PatientServiceImpl");
+            throw new PatientAlreadyExistException("A lastName of the patients has been added in DB meanwhile");
+        }
+        patientsSaved.forEach(patientSaved -> eventPublisher.publishEvent(PatientChangeEvent.created(patientSaved)));
+        logger.info("{} Patients have been successfully saved in DB!, from PatientServiceImpl", patientsSaved.size());
+        return patientsSaved;
+    }
+
     /**
      * Updates a patient in the database, if it exists and the last name is unique.
      * If a patient with the same lastName already exists in the database, it will throw a PatientAlreadyExistException.
@@ -100,6 +491,7 @@ public class PatientServiceImpl implements PatientService {
      * @param updatedPatient updated patient
      * @throws PatientNotFoundException     If the patient record with the given id does not exist in the database
      * @throws PatientAlreadyExistException If a patient with the same lastName already exists in the database, except for the patient to be updated
+     * @throws org.springframework.dao.OptimisticLockingFailureException If the patient has been modified by a concurrent request since it was read
      */
     @Override
     public Patient updatePatientById(Long id, Patient updatedPatient) {
@@ -115,6 +507,7 @@ public class PatientServiceImpl implements PatientService {
             throw new PatientAlreadyExistException("Patient with lastName:{%s} already exists in DB".formatted(updatedPatient.getLastName()));
         }
 
+        Patient previousPatient = new Patient(existingPatient);
         existingPatient.setLastName(updatedPatient.getLastName());
         existingPatient.setFirstName(updatedPatient.getFirstName());
         existingPatient.setDateOfBirth(updatedPatient.getDateOfBirth());
@@ -123,29 +516,166 @@ public class PatientServiceImpl implements PatientService {
         existingPatient.setPhoneNumber(updatedPatient.getPhoneNumber());
 
         Patient patientUpdated = patientRepository.save(existingPatient);
+        // flushed to read the committed version: it is only incremented if a field has changed
+        patientRepository.flush();
+        patientCache.evict(id, existingPatient.getVersion(), previousPatient.getLastName(), updatedPatient.getLastName());
+        eventPublisher.publishEvent(PatientChangeEvent.updated(id, PatientSummary.of(previousPatient), patientUpdated));
         logger.info("Patient with id:{{}} has been successfully updated!, from PatientServiceImpl", existingPatient.getId());
         return patientUpdated;
     }
 
     /**
-     * Deletes a Patient by given id if it exists in the database
+     * Updates a patient in the database with one UPDATE statement, if its version is still the expected one.
+     * Nothing is read before: the unique constraint on lastName replaces the lastName check,
+     * and the patient is only read again to tell a missing patient from a modified one when no row has been updated.
+     * The previous state given to the listeners is the cached one, if it is at the expected version: versions only grow,
+     * so a successful UPDATE changed exactly that state. Otherwise it is unknown.
+     *
+     * @param id             Patient Id
+     * @param version        expected version of the patient, usually given by the If-Match header
+     * @param updatedPatient updated patient
+     * @return the updated patient, with its new version
+     * @throws PatientNotFoundException        If the patient record with the given id does not exist in the database
+     * @throws PatientVersionMismatchException If the patient has been modified since the expected version
+     * @throws PatientAlreadyExistException    If a patient with the same lastName already exists in the database, except for the patient to be updated
+     */
+    @Override
+    public Patient updatePatientById(Long id, Long version, Patient updatedPatient) {
+        logger.debug("updatePatientById from PatientServiceImpl starts here with id:{{}} and version:{{}}", id, version);
+        Patient cachedPatient = patientCache.getById(id).filter(patient -> version.equals(patient.getVersion())).orElse(null);
+        // the caller's patient is left as is, the update is bound from and returned as a copy
+        Patient patientUpdated = new Patient(updatedPatient);
+        patientUpdated.setId(id);
+        patientUpdated.setVersion(version + 1);
+        // createdAt is not read: it is only returned when the patient was cached
+        patientUpdated.setCreatedAt(cachedPatient != null ? cachedPatient.getCreatedAt() : null);
+        // a bulk update skips the entity callbacks, updatedAt is bound from the patient
+        patientUpdated.setUpdatedAt(Patient.now());
+        int updatedRows;
+        try {
+            updatedRows = patientRepository.updateByIdAndVersion(id, version, patientUpdated);
+        } catch (DataIntegrityViolationException e) {
+            if (!isLastNameViolation(e)) {
+                throw e;
+            }
+            logger.error("Patient with lastName with:{{}} already exists in DB! from updatePatient, PatientServiceImpl", updatedPatient.getLastName());
+            throw new PatientAlreadyExistException("Patient with lastName:{%s} already exists in DB".formatted(updatedPatient.getLastName()));
+        }
+        if (updatedRows == 0) {
+            throw missingOrModified(id, version);
+        }
+
+        if (cachedPatient != null) {
+            patientCache.evict(id, patientUpdated.getVersion(), cachedPatient.getLastName(), patientUpdated.getLastName());
+            eventPublisher.publishEvent(PatientChangeEvent.updated(id, PatientSummary.of(cachedPatient), patientUpdated));
+        } else {
+            patientCache.evict(id, patientUpdated.getVersion(), patientUpdated.getLastName());
+            eventPublisher.publishEvent(PatientChangeEvent.updated(id, null, patientUpdated));
+        }
+        logger.info("Patient with id:{{}} has been successfully updated to version:{{}}!, from PatientServiceImpl", id, version + 1);
+        return patientUpdated;
+    }
+
+    /**
+     * Deletes a Patient by given id if it exists in the database, with one DELETE statement.
+     * The names of the Patient come from the cache, or from a projection query: the entity is never loaded.
      *
      * @param id Patient ID in DB
-     * @return Patient object that has been deleted
+     * @return summary of the Patient that has been deleted
      * @throws PatientNotFoundException if no Patient with the given id is found in the database
      */
     @Override
-    public Patient deletePatientById(Long id) {
+    public PatientSummary deletePatientById(Long id) {
         logger.debug("deletePatientById from PatientServiceImpl starts here with id:{{}}", id);
-        Patient patientDeleted = findPatientById(id);
+        Patient cachedPatient = patientCache.getById(id).orElse(null);
+        Optional<PatientSummary> patientDeleted = cachedPatient != null
+                ? Optional.of(PatientSummary.of(cachedPatient))
+                : patientRepository.findSummaryById(id);
 
-        patientRepository.deleteById(id);
+        if (patientDeleted.isEmpty() || patientRepository.deletePatientById(id) == 0) {
+            logger.error("Patient with id:{{}} doesn't exist in DB!, deletePatientById, from PatientServiceImpl", id);
+            throw new PatientNotFoundException("Patient with id:{%d} doesn't exist in DB!".formatted(id));
+        }
+        // persisted rather than saved: the ID is assigned, save would select before inserting
+        entityManager.persist(new PatientTombstone(id, Patient.now()));
+        // no version is cached again while the fence lasts, it only holds off the readers that loaded the patient before
+        patientCache.evict(id, Long.MAX_VALUE, patientDeleted.get().lastName());
+        eventPublisher.publishEvent(PatientChangeEvent.deleted(id, patientDeleted.get()));
         logger.info("Patient with id:{{}} has been successfully deleted, method from PatientServiceImpl", id);
 
-        return patientDeleted;
+        return patientDeleted.get();
     }
 
 
+    /**
+     * Searches patients by the beginning of their names, tolerating typos, in the in-memory search index.
+     * Does not touch the database, so no transaction is started.
+     *
+     * @param query words typed by the user
+     * @param limit maximum number of hits
+     * @return the best hits first
+     */
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<PatientSearchHit> searchPatients(String query, int limit) {
+        logger.debug("searchPatients from PatientServiceImpl starts here with query:{{}}", query);
+        List<PatientSearchHit> hits = patientSearchIndex.search(query, limit);
+        logger.info("{} Patients have been found for query:{{}}, from PatientServiceImpl", hits.size(), query);
+        return hits;
+    }
+
+    /**
+     * Finds the existing patients that may be the same person as the given one, in the in-memory duplicate index.
+     * Does not touch the database, so no transaction is started.
+     *
+     * @param patient patient to check, new or existing
+     * @param limit   maximum number of candidates
+     * @return the most similar patients first
+     */
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<PatientDuplicateCandidate> checkDuplicates(Patient patient, int limit) {
+        logger.debug("checkDuplicates from PatientServiceImpl starts here with lastName:{{}}", patient.getLastName());
+        List<PatientDuplicateCandidate> candidates = patientDuplicateIndex.findCandidates(patient, limit);
+        logger.info("{} duplicate candidates have been found for lastName:{{}}, from PatientServiceImpl", candidates.size(), patient.getLastName());
+        return candidates;
+    }
+
+    /**
+     * Scans all patients for near duplicates, in the in-memory duplicate index.
+     *
+     * @param limit maximum number of pairs
+     * @return the most similar pairs first
+     */
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<PatientDuplicatePair> findDuplicates(int limit) {
+        logger.debug("findDuplicates from PatientServiceImpl starts here");
+        List<PatientDuplicatePair> pairs = patientDuplicateIndex.findDuplicatePairs(limit);
+        logger.info("{} duplicate pairs have been found, from PatientServiceImpl", pairs.size());
+        return pairs;
+    }
+
+    /**
+     * @return hit, miss and eviction statistics of the patient cache
+     */
+    @Override
+    public List<CacheStatistics> getCacheStatistics() {
+        return patientCache.getStatistics();
+    }
+
+    /**
+     * Counts come from memory, the DB is only queried when they must be reloaded.
+     *
+     * @return patient counts by sex and by age band
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public PatientStats getPatientStats() {
+        logger.debug("getPatientStats from PatientServiceImpl starts here");
+        return patientDemographics.getStats();
+    }
+
     /**
      * Retrieves the Patient with the specified ID from the database.
      *
@@ -161,6 +691,26 @@ public class PatientServiceImpl implements PatientService {
         });
     }
 
+    /**
+     * Runs the query through the single flight, so concurrent callers asking for the same key share one query.
+     * The key includes the change version: a caller arriving after a committed change does not get a result read before it.
+     * Within a transaction, the caller may have uncommitted changes that another caller would not see: it queries alone.
+     *
+     * @param loads the single flight of the query
+     * @param key   ID or lastName of the patient
+     * @param query the query, and the caching of its result
+     * @return the patient, a copy of its own for each caller of the single flight
+     */
+    private <K> Patient load(SingleFlight<PatientLoadKey<K>, Patient> loads, K key, Supplier<Patient> query) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return query.get();
+        }
+        return new Patient(loads.execute(new PatientLoadKey<>(key, patientChangeVersion.current()), query));
+    }
+
+    private record PatientLoadKey<K>(K key, String version) {
+    }
+
     /**
      * Retrieves a patient by his lastName.
      *
@@ -178,4 +728,36 @@ public class PatientServiceImpl implements PatientService {
         return patient;
     }
 
+    /**
+     * Tells a missing patient from a patient that is no longer at the expected version.
+     */
+    private RuntimeException missingOrModified(Long id, Long version) {
+        if (!patientRepository.existsById(id)) {
+            logger.error("Patient with id:{{}} doesn't exist in DB!, from updatePatient, PatientServiceImpl", id);
+            return new PatientNotFoundException("Patient with id:{%d} doesn't exist in DB!".formatted(id));
+        }
+        logger.error("Patient with id:{{}} is not at version:{{}}, from updatePatient, PatientServiceImpl", id, version);
+        return new PatientVersionMismatchException("Patient with id:{%d} has been modified since version:{%d}".formatted(id, version));
+    }
+
+    private static long micros(Optional<Instant> instant) {
+        return instant.map(value -> ChronoUnit.MICROS.between(Instant.EPOCH, value)).orElse(0L);
+    }
+
+    /**
+     * Tells a violation of the unique constraint on lastName from the other integrity violations (NOT NULL, length...).
+     * The constraint name is matched as a part: MySQL prefixes it with the table name, H2 with the schema.
+     *
+     * @param exception the exception raised by the insert or the update
+     * @return true if the lastName is already used by another patient
+     */
+    private static boolean isLastNameViolation(Throwable exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException constraintViolation) {
+                String constraintName = constraintViolation.getConstraintName();
+                return constraintName != null && constraintName.toLowerCase(Locale.ROOT).contains(Patient.LAST_NAME_CONSTRAINT);
+            }
+        }
+        return false;
+    }
 }
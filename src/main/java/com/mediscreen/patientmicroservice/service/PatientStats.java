@@ -0,0 +1,15 @@
+package com.mediscreen.patientmicroservice.service;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Demographic counts of the patients.
+ *
+ * @param date      The day the ages are computed for.
+ * @param total     The number of patients.
+ * @param bySex     The number of patients by sex.
+ * @param byAgeBand The number of patients by age band, e.g. "18-39" or "65+".
+ */
+public record PatientStats(LocalDate date, long total, Map<String, Long> bySex, Map<String, Long> byAgeBand) {
+}
@@ -0,0 +1,57 @@
+package com.mediscreen.patientmicroservice.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Shares one call between the concurrent callers asking for the same key: the first caller runs it,
+ * the others wait for its result, or its exception. Nothing is kept once the call has completed, it is not a cache.
+ *
+ * @param <K> key of the call
+ * @param <V> result of the call
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentMap<K, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+
+    /**
+     * Runs the call, unless a call for the same key is in flight, then waits for its result.
+     *
+     * @param key  key of the call
+     * @param call the call, run by the calling thread
+     * @return the result of the call
+     */
+    public V execute(K key, Supplier<V> call) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = calls.putIfAbsent(key, flight);
+        if (inFlight != null) {
+            return join(inFlight);
+        }
+        try {
+            V value = call.get();
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, flight);
+        }
+    }
+
+    private static <V> V join(CompletableFuture<V> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
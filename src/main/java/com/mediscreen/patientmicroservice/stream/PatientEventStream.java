@@ -0,0 +1,261 @@
+package com.mediscreen.patientmicroservice.stream;
+
+import com.mediscreen.patientmicroservice.domain.Patient;
+import com.mediscreen.patientmicroservice.service.PatientChangeEvent;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes the committed patient changes to Server-Sent Events subscribers.
+ * <p>
+ * Each change gets an event ID and is kept in a ring buffer of the last changes, so a client reconnecting with the
+ * Last-Event-ID header first gets what it missed. Each subscriber has a bounded buffer, drained by a small pool of
+ * sender threads: a subscriber whose buffer is full is disconnected instead of slowing down the others, and resumes
+ * from its last event ID when it reconnects. A client too far behind the ring buffer gets a reset event and should
+ * resync from /api/patients/changes.
+ */
+@Component
+public class PatientEventStream implements MeterBinder {
+    private static final Logger logger = LoggerFactory.getLogger(PatientEventStream.class);
+    static final String RESET_EVENT = "reset";
+
+    /**
+     * Startup time, prefix of the event IDs: an ID handed out before a restart is never mistaken for a new one.
+     */
+    private final long epoch = System.currentTimeMillis();
+    private final int bufferSize;
+    private final int historySize;
+    private final long timeoutMillis;
+    private final ExecutorService senders;
+    private final Object lock = new Object();
+    private final ArrayDeque<PatientStreamEvent> history;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final AtomicLong droppedSubscribers = new AtomicLong();
+    private long sequence;
+
+    public PatientEventStream(@Value("${patient.events.buffer-size:256}") int bufferSize,
+                              @Value("${patient.events.history-size:1000}") int historySize,
+                              @Value("${patient.events.timeout:30m}") Duration timeout,
+                              @Value("${patient.events.sender-threads:4}") int senderThreads) {
+        this.bufferSize = bufferSize;
+        this.historySize = historySize;
+        this.timeoutMillis = timeout.toMillis();
+        this.history = new ArrayDeque<>(historySize);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("patient-events-");
+        threadFactory.setDaemon(true);
+        this.senders = Executors.newFixedThreadPool(senderThreads, threadFactory);
+    }
+
+    /**
+     * Adds a committed change to the ring buffer and to the buffer of every subscriber.
+     * Both happen under the lock taken by subscribe, so a new subscriber never misses nor repeats a change.
+     *
+     * @param event the change
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPatientChange(PatientChangeEvent event) {
+        Patient patient = event.current() == null ? null : new Patient(event.current());
+        synchronized (lock) {
+            PatientStreamEvent streamEvent = new PatientStreamEvent(++sequence, event.type(), event.patientId(), patient);
+            if (history.size() == historySize) {
+                history.removeFirst();
+            }
+            history.addLast(streamEvent);
+            for (Subscriber subscriber : subscribers) {
+                subscriber.offer(streamEvent);
+            }
+        }
+    }
+
+    /**
+     * Registers a new subscriber.
+     *
+     * @param lastEventId Last-Event-ID header of a reconnecting client, null for a new client
+     * @return the emitter of the subscriber, first replaying the changes after lastEventId when they are still known
+     */
+    public SseEmitter subscribe(String lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> unsubscribe(subscriber));
+        synchronized (lock) {
+            if (lastEventId != null) {
+                long after = parseSequence(lastEventId);
+                long oldest = history.isEmpty() ? sequence + 1 : history.getFirst().sequence();
+                if (after < oldest - 1 || after > sequence) {
+                    logger.info("Last-Event-ID:{{}} is not in the event history anymore, from PatientEventStream", lastEventId);
+                    subscriber.reset(eventId(sequence));
+                } else {
+                    history.stream().filter(event -> event.sequence() > after).forEach(subscriber::replay);
+                }
+            }
+            subscribers.add(subscriber);
+        }
+        subscriber.schedule();
+        logger.info("New subscriber to the patient events, {} subscribers, from PatientEventStream", subscribers.size());
+        return emitter;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("patient.events.subscribers", subscribers, List::size)
+                .description("Subscribers to the patient event stream")
+                .register(registry);
+        FunctionCounter.builder("patient.events.dropped.subscribers", droppedSubscribers, AtomicLong::get)
+                .description("Subscribers disconnected because their buffer was full")
+                .register(registry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        senders.shutdownNow();
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        subscriber.close();
+        subscribers.remove(subscriber);
+    }
+
+    private String eventId(long sequence) {
+        return epoch + "-" + sequence;
+    }
+
+    /**
+     * @return the sequence held by an event ID of this process, -1 for an ID of another process or an invalid one
+     */
+    private long parseSequence(String eventId) {
+        String prefix = epoch + "-";
+        if (!eventId.startsWith(prefix)) {
+            return -1L;
+        }
+        try {
+            return Long.parseLong(eventId.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    /**
+     * Buffer of one subscriber. At most one sender thread drains it at a time, so the emitter is never used concurrently.
+     */
+    private class Subscriber {
+        private final SseEmitter emitter;
+        private final ArrayDeque<PatientStreamEvent> queue = new ArrayDeque<>();
+        private String resetEventId;
+        private boolean overflowed;
+        private boolean closed;
+        private boolean draining;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        private void offer(PatientStreamEvent event) {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                if (queue.size() >= bufferSize) {
+                    // the queued events are not sent: the client resumes from the last one it has received
+                    queue.clear();
+                    overflowed = true;
+                    closed = true;
+                } else {
+                    queue.addLast(event);
+                }
+            }
+            schedule();
+        }
+
+        /**
+         * Queues a replayed event, not counted against the buffer size: the replay is bounded by the history size.
+         */
+        private synchronized void replay(PatientStreamEvent event) {
+            queue.addLast(event);
+        }
+
+        private synchronized void reset(String eventId) {
+            resetEventId = eventId;
+        }
+
+        private synchronized void close() {
+            closed = true;
+            queue.clear();
+        }
+
+        private synchronized void schedule() {
+            if (!draining && (!queue.isEmpty() || overflowed || resetEventId != null)) {
+                draining = true;
+                senders.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                while (true) {
+                    SseEmitter.SseEventBuilder next;
+                    synchronized (this) {
+                        if (overflowed) {
+                            overflowed = false;
+                            draining = false;
+                            next = null;
+                        } else if (resetEventId != null) {
+                            next = SseEmitter.event().id(resetEventId).name(RESET_EVENT)
+                                    .data("Event history lost, resync from /api/patients/changes");
+                            resetEventId = null;
+                        } else {
+                            PatientStreamEvent event = queue.pollFirst();
+                            if (event == null) {
+                                draining = false;
+                                return;
+                            }
+                            next = SseEmitter.event().id(eventId(event.sequence())).name(event.type().name().toLowerCase())
+                                    .data(event, MediaType.APPLICATION_JSON);
+                        }
+                    }
+                    if (next == null) {
+                        drop();
+                        return;
+                    }
+                    emitter.send(next);
+                }
+            } catch (IOException | IllegalStateException e) {
+                // client gone or emitter already completed
+                logger.debug("Subscriber disconnected: {}, from PatientEventStream", e.getMessage());
+                synchronized (this) {
+                    draining = false;
+                }
+                unsubscribe(this);
+            }
+        }
+
+        private void drop() {
+            droppedSubscribers.incrementAndGet();
+            logger.warn("Subscriber too slow, more than {} events behind, disconnected, from PatientEventStream", bufferSize);
+            subscribers.remove(this);
+            emitter.complete();
+        }
+    }
+}
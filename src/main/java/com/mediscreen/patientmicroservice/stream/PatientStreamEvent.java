@@ -0,0 +1,15 @@
+package com.mediscreen.patientmicroservice.stream;
+
+import com.mediscreen.patientmicroservice.domain.Patient;
+import com.mediscreen.patientmicroservice.service.PatientChangeEvent;
+
+/**
+ * A committed patient change, as sent to the event stream subscribers.
+ *
+ * @param sequence  The position of the change since the startup, part of the event ID.
+ * @param type      The kind of change.
+ * @param patientId The ID of the changed patient.
+ * @param patient   The state after the change, null for a deletion.
+ */
+public record PatientStreamEvent(long sequence, PatientChangeEvent.Type type, Long patientId, Patient patient) {
+}
@@ -1,10 +1,24 @@
 package com.mediscreen.patientmicroservice.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.mediscreen.patientmicroservice.config.BinaryFormatConfiguration;
 import com.mediscreen.patientmicroservice.domain.Patient;
+import com.mediscreen.patientmicroservice.domain.PatientSummary;
+import com.mediscreen.patientmicroservice.domain.PatientTombstone;
 import com.mediscreen.patientmicroservice.exceptions.PatientAlreadyExistException;
 import com.mediscreen.patientmicroservice.exceptions.PatientNotFoundException;
+import com.mediscreen.patientmicroservice.exceptions.PatientServiceUnavailableException;
+import com.mediscreen.patientmicroservice.exceptions.PatientValidationException;
+import com.mediscreen.patientmicroservice.exceptions.PatientVersionMismatchException;
+import com.mediscreen.patientmicroservice.search.PatientDuplicateCandidate;
+import com.mediscreen.patientmicroservice.search.PatientDuplicatePair;
+import com.mediscreen.patientmicroservice.search.PatientSearchHit;
+import com.mediscreen.patientmicroservice.service.PatientChanges;
+import com.mediscreen.patientmicroservice.service.PatientLookup;
 import com.mediscreen.patientmicroservice.service.PatientService;
+import com.mediscreen.patientmicroservice.service.PatientStats;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,16 +26,25 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.WebApplicationContext;
 
+import java.nio.charset.StandardCharsets;
 import java.security.InvalidParameterException;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 import static org.hamcrest.CoreMatchers.is;
@@ -71,6 +94,144 @@ class PatientControllerTest {
 
     }
 
+    @Test
+    void getAllPatientsWithLimitShouldReturnPageAndNextLink() throws Exception {
+        // Given
+        LocalDate dateOfBirth = LocalDate.of(2022, 8, 31);
+
+        Patient patient1 = new Patient(1L, "LastName1", "FirstName1", dateOfBirth, "F", "21 Rue de Paris", "121-262-9599");
+        Patient patient2 = new Patient(2L, "LastName2", "FirstName2", dateOfBirth, "M", "36 Rue Jean Jaurès", "756-311-5416");
+        Patient patient3 = new Patient(3L, "LastName3", "FirstName3", dateOfBirth, "M", "38 Rue Jean Jaurès", "756-311-5417");
+
+        patients = new ArrayList<>(List.of(patient1, patient2, patient3));
+        // When
+        when(patientService.getPatientsAfter(0L, 3)).thenReturn(patients);
+
+        // Then
+        mockMvc.perform(get("/api/patients").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(2)))
+                .andExpect(jsonPath("$[1].lastName", is("LastName2")))
+                .andExpect(header().string("Link", "<http://localhost/api/patients?after=2&limit=2>; rel=\"next\""));
+        verify(patientService, never()).getPatients();
+    }
+
+    @Test
+    void getAllPatientsLastPageShouldNotReturnNextLink() throws Exception {
+        // Given
+        LocalDate dateOfBirth = LocalDate.of(2022, 8, 31);
+
+        Patient patient3 = new Patient(3L, "LastName3", "FirstName3", dateOfBirth, "M", "38 Rue Jean Jaurès", "756-311-5417");
+
+        patients = new ArrayList<>(List.of(patient3));
+        // When
+        when(patientService.getPatientsAfter(2L, 3)).thenReturn(patients);
+
+        // Then
+        mockMvc.perform(get("/api/patients").param("after", "2").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(3)))
+                .andExpect(header().doesNotExist("Link"));
+    }
+
+    @Test
+    void getAllPatientsWithSummaryViewShouldReturnSummariesAndNextLink() throws Exception {
+        // Given
+        LocalDate dateOfBirth = LocalDate.of(2022, 8, 31);
+
+        when(patientService.getPatientSummariesAfter(0L, 3)).thenReturn(List.of(
+                new PatientSummary(1L, "LastName1", "FirstName1", dateOfBirth, "F"),
+                new PatientSummary(2L, "LastName2", "FirstName2", dateOfBirth, "M"),
+                new PatientSummary(3L, "LastName3", "FirstName3", dateOfBirth, "M")));
+
+        // Then
+        mockMvc.perform(get("/api/patients?view=summary&limit=2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(2)))
+                .andExpect(jsonPath("$[1].lastName", is("LastName2")))
+                .andExpect(jsonPath("$[1].phoneNumber").doesNotExist())
+                .andExpect(header().string("Link", "<http://localhost/api/patients?view=summary&after=2&limit=2>; rel=\"next\""));
+        verify(patientService, never()).getPatientsAfter(anyLong(), anyInt());
+    }
+
+    @Test
+    void getPatientByIdWithSummaryViewShouldReturnSummary() throws Exception {
+        // Given
+        when(patientService.getPatientSummaryById(2L)).thenReturn(new PatientSummary(2L, "LastName2", "FirstName2", LocalDate.of(2023, 3, 24), "M"));
+
+        // Then
+        mockMvc.perform(get("/api/patients/{id}", 2).param("view", "summary"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.lastName", is("LastName2")))
+                .andExpect(jsonPath("$.dateOfBirth", is("2023-03-24")))
+                .andExpect(jsonPath("$.homeAddress").doesNotExist());
+        verify(patientService, never()).getPatientById(anyLong());
+    }
+
+    @Test
+    void getPatientByLastNameWithSummaryViewShouldReturnSummary() throws Exception {
+        // Given
+        when(patientService.getPatientSummaryByLastName("LastName2")).thenReturn(new PatientSummary(2L, "LastName2", "FirstName2", LocalDate.of(2023, 3, 24), "M"));
+
+        // Then
+        mockMvc.perform(get("/api/patient").param("lastName", "LastName2").param("view", "summary"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id", is(2)))
+                .andExpect(jsonPath("$.sex", is("M")));
+        verify(patientService, never()).getPatientByLastName(anyString());
+    }
+
+    @Test
+    void exportPatientsShouldStreamOnePatientPerLine() throws Exception {
+        // Given
+        LocalDate dateOfBirth = LocalDate.of(2022, 8, 31);
+
+        Patient patient1 = new Patient(1L, "LastName1", "FirstName1", dateOfBirth, "F", "21 Rue de Paris", "121-262-9599");
+        Patient patient2 = new Patient(2L, "LastName2", "FirstName2", dateOfBirth, "M", "36 Rue Jean Jaurès", "756-311-5416");
+
+        // When
+        doAnswer(invocation -> {
+            Consumer<Patient> consumer = invocation.getArgument(0);
+            consumer.accept(patient1);
+            consumer.accept(patient2);
+            return null;
+        }).when(patientService).exportPatients(any());
+
+        // Then
+        MvcResult mvcResult = mockMvc.perform(get("/api/patients/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                // NDJSON is UTF-8 like JSON, without a charset parameter MockMvc would decode it as ISO-8859-1
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(objectMapper.readValue(lines[0], Patient.class)).isEqualTo(patient1);
+        assertThat(objectMapper.readValue(lines[1], Patient.class)).isEqualTo(patient2);
+        verify(patientService, never()).getPatients();
+    }
+
+    @Test
+    void searchPatientsShouldReturnHits() throws Exception {
+        // Given
+        LocalDate dateOfBirth = LocalDate.of(2022, 8, 31);
+        PatientSearchHit hit = new PatientSearchHit(1L, "Smith", "John", dateOfBirth, 0.8);
+
+        // When
+        when(patientService.searchPatients("smi", 10)).thenReturn(List.of(hit));
+
+        // Then
+        mockMvc.perform(get("/api/patients/search").param("q", "smi"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(1)))
+                .andExpect(jsonPath("$[0].lastName", is("Smith")));
+        verify(patientService).searchPatients("smi", 10);
+    }
+
     @Test
     void getPatientByIdShouldReturnPatient() throws Exception {
         // Given
@@ -91,6 +252,60 @@ class PatientControllerTest {
         verify(patientService).getPatientById(anyLong());
     }
 
+    @Test
+    void getPatientByIdShouldReturnVersionAsETag() throws Exception {
+        // Given
+        Patient patient = new Patient(2L, "LastName2", "FirstName2", LocalDate.of(2023, 3, 24), "M", "36 Rue Jean Jaurès", "756-311-5416");
+        patient.setVersion(3L);
+        when(patientService.getPatientById(2L)).thenReturn(patient);
+
+        // Then
+        mockMvc.perform(get("/api/patients/{id}", 2))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"3\""))
+                .andExpect(jsonPath("$.version", is(3)));
+    }
+
+    @Test
+    void getPatientByIdWithMatchingETagShouldReturnNotModifiedWithoutLoadingPatient() throws Exception {
+        // Given
+        when(patientService.getPatientVersion(2L)).thenReturn(3L);
+
+        // Then
+        mockMvc.perform(get("/api/patients/{id}", 2).header("If-None-Match", "\"3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"3\""))
+                .andExpect(content().string(""));
+        verify(patientService, never()).getPatientById(anyLong());
+    }
+
+    @Test
+    void getPatientByIdWithStaleETagShouldReturnPatient() throws Exception {
+        // Given
+        Patient patient = new Patient(2L, "LastName2", "FirstName2", LocalDate.of(2023, 3, 24), "M", "36 Rue Jean Jaurès", "756-311-5416");
+        patient.setVersion(4L);
+        when(patientService.getPatientVersion(2L)).thenReturn(4L);
+        when(patientService.getPatientById(2L)).thenReturn(patient);
+
+        // Then
+        mockMvc.perform(get("/api/patients/{id}", 2).header("If-None-Match", "\"3\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"4\""))
+                .andExpect(jsonPath("$.lastName", is("LastName2")));
+    }
+
+    @Test
+    void getAllPatientsWithMatchingETagShouldReturnNotModifiedWithoutQuery() throws Exception {
+        // Given
+        when(patientService.getPatientsVersion()).thenReturn("1681200000000-7");
+
+        // Then
+        mockMvc.perform(get("/api/patients").header("If-None-Match", "W/\"1681200000000-7\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "W/\"1681200000000-7\""));
+        verify(patientService, never()).getPatients();
+    }
+
     @Test
     void getPatientByIdShouldThrowPatientNotExistingException() throws Exception {
         // Given
@@ -142,6 +357,73 @@ class PatientControllerTest {
     }
 
 
+    @Test
+    void getPatientByIdWithSmileAcceptShouldReturnSmile() throws Exception {
+        // Given
+        Patient patient = new Patient(2L, "LastName2", "FirstName2", LocalDate.of(2023, 3, 24), "M", "36 Rue Jean Jaurès", "756-311-5416");
+        when(patientService.getPatientById(2L)).thenReturn(patient);
+        ObjectMapper smileMapper = Jackson2ObjectMapperBuilder.smile().build();
+
+        // When
+        byte[] smile = mockMvc.perform(get("/api/patients/{id}", 2).accept(BinaryFormatConfiguration.APPLICATION_SMILE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(BinaryFormatConfiguration.APPLICATION_SMILE))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        // Then
+        assertThat(smileMapper.readValue(smile, Patient.class)).isEqualTo(patient);
+        assertThat(smile.length).isLessThan(objectMapper.writeValueAsBytes(patient).length);
+    }
+
+    @Test
+    void getPatientByIdWithSmileAcceptShouldWriteDateOfBirthAsInJson() throws Exception {
+        // Given
+        Patient patient = new Patient(2L, "LastName2", "FirstName2", LocalDate.of(2023, 4, 12), "M", "36 Rue Jean Jaurès", "756-311-5416");
+        when(patientService.getPatientById(2L)).thenReturn(patient);
+        ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+
+        // When
+        byte[] smile = mockMvc.perform(get("/api/patients/{id}", 2).accept(BinaryFormatConfiguration.APPLICATION_SMILE))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+
+        // Then
+        JsonNode dateOfBirth = smileMapper.readTree(smile).get("dateOfBirth");
+        assertThat(dateOfBirth.isTextual()).isTrue();
+        assertThat(dateOfBirth.asText()).isEqualTo("2023-04-12");
+    }
+
+    @Test
+    void getAllPatientsWithAnyAcceptShouldStillReturnJson() throws Exception {
+        // Given
+        when(patientService.getPatients()).thenReturn(List.of());
+
+        // Then
+        mockMvc.perform(get("/api/patients").accept(MediaType.ALL))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    void addPatientWithCborBodyShouldReturnCbor() throws Exception {
+        // Given
+        Patient patient = new Patient("LastName", "FirstName", LocalDate.of(2023, 4, 12), "F", "21 Rue de Paris", "121-262-9599");
+        ObjectMapper cborMapper = Jackson2ObjectMapperBuilder.cbor().build();
+        when(patientService.addPatient(patient)).thenReturn(patient);
+
+        // When
+        byte[] cbor = mockMvc.perform(post("/api/patients")
+                        .contentType(MediaType.APPLICATION_CBOR)
+                        .accept(MediaType.APPLICATION_CBOR)
+                        .content(cborMapper.writeValueAsBytes(patient)))
+                .andExpect(status().isCreated())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        // Then
+        assertThat(cborMapper.readValue(cbor, Patient.class)).isEqualTo(patient);
+    }
+
     @Test
     void addPatientShouldBeSuccessful() throws Exception {
         // Given
@@ -221,6 +503,185 @@ class PatientControllerTest {
 
     }
 
+    @Test
+    void addPatientsShouldReturnCreatedPatients() throws Exception {
+        // Given
+        LocalDate dateOfBirth = LocalDate.of(2023, 4, 12);
+
+        Patient patient1 = new Patient(1L, "LastName1", "FirstName1", dateOfBirth, "F", "21 Rue de Paris", "121-262-9599");
+        Patient patient2 = new Patient(2L, "LastName2", "FirstName2", dateOfBirth, "M", "36 Rue Jean Jaurès", "756-311-5416");
+
+        // When
+        when(patientService.addPatients(anyList())).thenReturn(List.of(patient1, patient2));
+
+        // Then
+        mockMvc.perform(post("/api/patients/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(patient1, patient2))))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.length()", is(2)))
+                .andExpect(jsonPath("$[1].id", is(2)));
+
+        verify(patientService).addPatients(anyList());
+    }
+
+    @Test
+    void addPatientsShouldReturnValidationErrors() throws Exception {
+        // When
+        when(patientService.addPatients(anyList())).thenThrow(new PatientValidationException("Patients are not valid",
+                List.of("Patient #0 lastName: Last name is mandatory")));
+
+        // Then
+        mockMvc.perform(post("/api/patients/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"lastName\":\"\"}]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.status", is(400)))
+                .andExpect(jsonPath("$.errors[0]", is("Patient #0 lastName: Last name is mandatory")));
+    }
+
+    @Test
+    void getPatientsByIdsShouldReturnFoundPatientsAndMissingIds() throws Exception {
+        // Given
+        Patient patient = new Patient(1L, "LastName1", "FirstName1", LocalDate.of(2023, 3, 24), "F", "21 Rue de Paris", "121-262-9599");
+        when(patientService.getPatientsByIds(List.of(1L, 2L))).thenReturn(new PatientLookup(List.of(patient), List.of(2L)));
+
+        // Then
+        mockMvc.perform(get("/api/patients").param("ids", "1,2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.patients[0].lastName", is("LastName1")))
+                .andExpect(jsonPath("$.missingIds[0]", is(2)));
+        verify(patientService, never()).getPatients();
+    }
+
+    @Test
+    void lookupPatientsByIdsShouldReadIdsFromBody() throws Exception {
+        // Given
+        when(patientService.getPatientsByIds(List.of(4L, 5L))).thenReturn(new PatientLookup(List.of(), List.of(4L, 5L)));
+
+        // Then
+        mockMvc.perform(post("/api/patients/lookup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[4,5]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.patients").isEmpty())
+                .andExpect(jsonPath("$.missingIds[1]", is(5)));
+    }
+
+    @Test
+    void lookupPatientsByTooManyIdsShouldReturnBadRequest() throws Exception {
+        // Given
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= 10_001; id++) {
+            ids.add(id);
+        }
+
+        // Then
+        mockMvc.perform(post("/api/patients/lookup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(ids)))
+                .andExpect(status().isBadRequest());
+        verify(patientService, never()).getPatientsByIds(anyList());
+    }
+
+    @Test
+    void getPatientChangesShouldReturnChangesAndNextLink() throws Exception {
+        // Given
+        Instant since = Instant.parse("2023-04-12T10:00:00Z");
+        Instant deletedAt = Instant.parse("2023-04-12T10:00:05Z");
+        Patient patient = new Patient(1L, "LastName1", "FirstName1", LocalDate.of(2023, 3, 24), "F", "21 Rue de Paris", "121-262-9599");
+        when(patientService.getPatientChanges(since, 0L, 2)).thenReturn(
+                new PatientChanges(List.of(patient), List.of(new PatientTombstone(2L, deletedAt)), deletedAt, 2L, true));
+
+        // Then
+        mockMvc.perform(get("/api/patients/changes").param("since", "2023-04-12T10:00:00Z").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changed[0].lastName", is("LastName1")))
+                .andExpect(jsonPath("$.deleted[0].patientId", is(2)))
+                .andExpect(jsonPath("$.since", is("2023-04-12T10:00:05Z")))
+                .andExpect(header().string("Link", "<http://localhost/api/patients/changes?since=2023-04-12T10:00:05Z&afterId=2&limit=2>; rel=\"next\""));
+    }
+
+    @Test
+    void getPatientChangesWithoutCursorShouldStartFromTheBeginning() throws Exception {
+        // Given
+        when(patientService.getPatientChanges(Instant.EPOCH, 0L, 50)).thenReturn(new PatientChanges(List.of(), List.of(), Instant.EPOCH, 0L, false));
+
+        // Then
+        mockMvc.perform(get("/api/patients/changes"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.hasMore", is(false)))
+                .andExpect(header().doesNotExist("Link"));
+    }
+
+    @Test
+    void checkDuplicatesShouldReturnCandidates() throws Exception {
+        // Given
+        Patient patient = new Patient("Smyth", "John", LocalDate.of(1980, 4, 12), "M", "21 Rue de Paris", "121-262-9996");
+        when(patientService.checkDuplicates(patient, 10)).thenReturn(List.of(
+                new PatientDuplicateCandidate(1L, "Smith", "John", LocalDate.of(1980, 4, 12), 0.93)));
+
+        // Then
+        mockMvc.perform(post("/api/patients/duplicates/check")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(patient)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(1)))
+                .andExpect(jsonPath("$[0].lastName", is("Smith")));
+        verify(patientService, never()).addPatient(any(Patient.class));
+    }
+
+    @Test
+    void checkDuplicatesWithInvalidPatientShouldReturnBadRequest() throws Exception {
+        // Given
+        Patient patient = new Patient("", "John", LocalDate.of(1980, 4, 12), "M", "21 Rue de Paris", "121-262-9996");
+
+        // Then
+        mockMvc.perform(post("/api/patients/duplicates/check")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(patient)))
+                .andExpect(status().isBadRequest());
+        verify(patientService, never()).checkDuplicates(any(Patient.class), anyInt());
+    }
+
+    @Test
+    void findDuplicatesShouldCapLimit() throws Exception {
+        // Given
+        when(patientService.findDuplicates(1000)).thenReturn(List.of(new PatientDuplicatePair(1L, 2L, 0.93)));
+
+        // Then
+        mockMvc.perform(get("/api/patients/duplicates").param("limit", "100000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].otherId", is(2)));
+    }
+
+    @Test
+    void getPatientStatsShouldReturnCounts() throws Exception {
+        // Given
+        when(patientService.getPatientStats()).thenReturn(new PatientStats(LocalDate.of(2023, 4, 12), 3L,
+                Map.of("F", 2L, "M", 1L), Map.of("0-17", 1L, "18-39", 2L)));
+
+        // Then
+        mockMvc.perform(get("/api/patients/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total", is(3)))
+                .andExpect(jsonPath("$.bySex.F", is(2)))
+                .andExpect(jsonPath("$.byAgeBand['18-39']", is(2)));
+        verify(patientService, never()).getPatients();
+    }
+
+    @Test
+    void getPatientStatsShouldReturnServiceUnavailableWithRetryAfter() throws Exception {
+        // Given
+        when(patientService.getPatientStats()).thenThrow(new PatientServiceUnavailableException("Too many concurrent read requests, retry later", Duration.ofSeconds(2)));
+
+        // Then
+        mockMvc.perform(get("/api/patients/stats"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "2"))
+                .andExpect(jsonPath("$.statusCode", is(503)));
+    }
+
     @Test
     void updatePatientByIdShouldBeSuccessful() throws Exception {
         // Given
@@ -241,6 +702,59 @@ class PatientControllerTest {
         verify(patientService).updatePatientById(anyLong(),any(Patient.class));
     }
 
+    @Test
+    void updatePatientByIdWithIfMatchShouldReturnNewETag() throws Exception {
+        // Given
+        LocalDate dateOfBirth = LocalDate.of(2023, 4, 12);
+        Patient patientToUpdate = new Patient(5L, "LastName", "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262-9599");
+        Patient patientUpdated = new Patient(5L, "LastName", "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262-9599");
+        patientUpdated.setVersion(4L);
+
+        when(patientService.updatePatientById(5L, 3L, patientToUpdate)).thenReturn(patientUpdated);
+
+        // Then
+        mockMvc.perform(put("/api/patients/{id}", 5)
+                        .header("If-Match", "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(patientToUpdate)))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"4\""));
+
+        verify(patientService, never()).updatePatientById(anyLong(), any(Patient.class));
+    }
+
+    @Test
+    void updatePatientByIdWithStaleIfMatchShouldReturnPreconditionFailed() throws Exception {
+        // Given
+        Patient patientToUpdate = new Patient(5L, "LastName", "FirstName", LocalDate.of(2023, 4, 12), "F", "21 Rue de Paris", "121-262-9599");
+
+        when(patientService.updatePatientById(anyLong(), anyLong(), any(Patient.class)))
+                .thenThrow(new PatientVersionMismatchException("Patient with id:{5} has been modified since version:{3}"));
+
+        // Then
+        mockMvc.perform(put("/api/patients/{id}", 5)
+                        .header("If-Match", "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(patientToUpdate)))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void updatePatientByIdModifiedConcurrentlyShouldReturnConflict() throws Exception {
+        // Given
+        Patient patientToUpdate = new Patient(5L, "LastName", "FirstName", LocalDate.of(2023, 4, 12), "F", "21 Rue de Paris", "121-262-9599");
+
+        when(patientService.updatePatientById(anyLong(), any(Patient.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Patient.class, 5L));
+
+        // Then
+        mockMvc.perform(put("/api/patients/{id}", 5)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(patientToUpdate)))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.statusCode", is(409)));
+    }
+
     @Test
     void updatePatientByIdShouldThrowPatientAlreadyExistException() throws Exception {
         // Given
@@ -280,7 +794,7 @@ class PatientControllerTest {
         // Given
         LocalDate dateOfBirth = LocalDate.of(2023, 4, 12);
         Long id = 5L;
-        Patient patientDeleted = new Patient(id,"LastName", "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262-9599");
+        PatientSummary patientDeleted = new PatientSummary(id, "LastName", "FirstName", dateOfBirth, "F");
 
         when(patientService.deletePatientById(anyLong())).thenReturn(patientDeleted);
 
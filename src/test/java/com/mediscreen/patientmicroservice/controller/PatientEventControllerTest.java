@@ -0,0 +1,109 @@
+package com.mediscreen.patientmicroservice.controller;
+
+import com.mediscreen.patientmicroservice.domain.Patient;
+import com.mediscreen.patientmicroservice.service.PatientChangeEvent;
+import com.mediscreen.patientmicroservice.stream.PatientEventStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.time.LocalDate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+@WebMvcTest(controllers = PatientEventController.class, properties = "patient.events.history-size=3")
+@Import(PatientEventStream.class)
+class PatientEventControllerTest {
+    private static final Pattern EVENT_ID = Pattern.compile("id:(\\d+-\\d+)\\nevent:created\\ndata:[^\\n]*\"patientId\":1,");
+
+    private MockMvc mockMvc;
+
+    @Autowired
+    private WebApplicationContext context;
+    @Autowired
+    private PatientEventStream patientEventStream;
+
+    @BeforeEach
+    void init() {
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).build();
+    }
+
+    @Test
+    void streamPatientEventsShouldPushCommittedChanges() throws Exception {
+        // Given
+        MvcResult result = subscribe(null);
+
+        // When
+        patientEventStream.onPatientChange(PatientChangeEvent.created(patient(1L)));
+        patientEventStream.onPatientChange(PatientChangeEvent.deleted(1L, null));
+
+        // Then
+        String content = awaitContent(result, "event:deleted");
+        assertThat(content).contains("event:created", "\"lastName\":\"LastName1\"", "\"type\":\"DELETED\"");
+    }
+
+    @Test
+    void streamPatientEventsWithLastEventIdShouldReplayMissedChanges() throws Exception {
+        // Given
+        MvcResult first = subscribe(null);
+        patientEventStream.onPatientChange(PatientChangeEvent.created(patient(1L)));
+        patientEventStream.onPatientChange(PatientChangeEvent.created(patient(2L)));
+        Matcher matcher = EVENT_ID.matcher(awaitContent(first, "\"patientId\":2,"));
+        assertThat(matcher.find()).isTrue();
+
+        // When
+        MvcResult resumed = subscribe(matcher.group(1));
+
+        // Then
+        String content = awaitContent(resumed, "\"patientId\":2,");
+        assertThat(content).doesNotContain("\"patientId\":1,");
+    }
+
+    @Test
+    void streamPatientEventsWithUnknownLastEventIdShouldSendReset() throws Exception {
+        // When
+        MvcResult result = subscribe("0-1");
+
+        // Then
+        assertThat(awaitContent(result, "event:reset")).contains("/api/patients/changes");
+    }
+
+    private MvcResult subscribe(String lastEventId) throws Exception {
+        MockHttpServletRequestBuilder requestBuilder = get("/api/patients/events");
+        if (lastEventId != null) {
+            requestBuilder.header("Last-Event-ID", lastEventId);
+        }
+        return mockMvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+    }
+
+    /**
+     * Events are sent by the stream threads: waits until the expected one has been written.
+     */
+    private static String awaitContent(MvcResult result, String expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        String content = result.getResponse().getContentAsString();
+        while (!content.contains(expected) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            content = result.getResponse().getContentAsString();
+        }
+        assertThat(content).contains(expected);
+        return content;
+    }
+
+    private static Patient patient(Long id) {
+        return new Patient(id, "LastName" + id, "FirstName" + id, LocalDate.of(2023, 4, 12), "F", "21 Rue de Paris", "121-262-9599");
+    }
+}
@@ -0,0 +1,131 @@
+package com.mediscreen.patientmicroservice.integration_test;
+
+import com.mediscreen.patientmicroservice.domain.Patient;
+import com.mediscreen.patientmicroservice.test_repository.PatientTestRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewInterceptor;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Not transactional, like a real request: connections are only held by the service transactions.
+ * The hold time of each connection is the hikaricp.connections.usage timer, also exposed on /actuator/prometheus.
+ */
+@SpringBootTest
+@ActiveProfiles("h2-test")
+@AutoConfigureMockMvc
+@DirtiesContext
+public class ConnectionHoldTimeIT {
+    private static final int REQUESTS = 20;
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private ApplicationContext applicationContext;
+    @Autowired
+    private PatientTestRepository patientRepository;
+    @Autowired
+    private ActiveConnectionsBeforeBodyWrite activeConnectionsBeforeBodyWrite;
+
+    /**
+     * Records the number of connections checked out of the pool when the response body is about to be serialized.
+     */
+    @TestConfiguration
+    static class ActiveConnectionsConfiguration {
+        @Bean
+        ActiveConnectionsBeforeBodyWrite activeConnectionsBeforeBodyWrite(HikariDataSource dataSource) {
+            return new ActiveConnectionsBeforeBodyWrite(dataSource);
+        }
+    }
+
+    @ControllerAdvice
+    static class ActiveConnectionsBeforeBodyWrite implements ResponseBodyAdvice<Object> {
+        private final HikariDataSource dataSource;
+        private final AtomicInteger maxActiveConnections = new AtomicInteger();
+
+        ActiveConnectionsBeforeBodyWrite(HikariDataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        @Override
+        public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+            return true;
+        }
+
+        @Override
+        public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                      Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                      ServerHttpRequest request, ServerHttpResponse response) {
+            maxActiveConnections.accumulateAndGet(dataSource.getHikariPoolMXBean().getActiveConnections(), Math::max);
+            return body;
+        }
+    }
+
+    @BeforeEach
+    void init() {
+        patientRepository.save(new Patient("LastName", "FirstName", LocalDate.of(2023, 4, 12), "F", "21 Rue de Paris", "121-262-9599"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        patientRepository.deleteAll();
+    }
+
+    @Test
+    void openEntityManagerInViewShouldBeDisabled() {
+        assertThat(applicationContext.getBeanNamesForType(OpenEntityManagerInViewInterceptor.class)).isEmpty();
+    }
+
+    @Test
+    void getPatientShouldReleaseConnectionBeforeWritingResponse() throws Exception {
+        // Given
+        Long id = patientRepository.findAll().get(0).getId();
+        Timer connectionUsage = meterRegistry.get("hikaricp.connections.usage").timer();
+        long connectionsBefore = connectionUsage.count();
+
+        // When
+        for (int i = 0; i < REQUESTS; i++) {
+            mockMvc.perform(get("/api/patients/{id}", id).param("view", "summary"))
+                    .andExpect(status().isOk());
+            mockMvc.perform(get("/api/patients"))
+                    .andExpect(status().isOk());
+        }
+        long connections = connectionUsage.count() - connectionsBefore;
+
+        // Then
+        assertAll(
+                () -> assertThat(activeConnectionsBeforeBodyWrite.maxActiveConnections.get()).isZero(),
+                // one short checkout per request, by the service call
+                () -> assertThat(connections).isEqualTo(2L * REQUESTS)
+        );
+    }
+}
@@ -0,0 +1,86 @@
+package com.mediscreen.patientmicroservice.integration_test;
+
+import com.mediscreen.patientmicroservice.domain.Patient;
+import com.mediscreen.patientmicroservice.exceptions.PatientAlreadyExistException;
+import com.mediscreen.patientmicroservice.service.PatientService;
+import com.mediscreen.patientmicroservice.test_repository.PatientTestRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+/**
+ * Not transactional: every insert must run and commit in its own transaction.
+ */
+@SpringBootTest
+@ActiveProfiles("h2-test")
+@DirtiesContext
+public class PatientConcurrentInsertIT {
+    private static final int THREADS = 16;
+
+    @Autowired
+    private PatientService patientService;
+    @Autowired
+    private PatientTestRepository patientRepository;
+
+    @AfterEach
+    void tearDown() {
+        patientRepository.deleteAll();
+    }
+
+    @Test
+    void addPatientConcurrentlyWithSameLastNameShouldSaveOnlyOnePatient() throws Exception {
+        // Given
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            Patient patient = new Patient("LastName", "FirstName" + i, LocalDate.of(2023, 4, 12), "F", "21 Rue de Paris", "121-262-9599");
+            results.add(executor.submit(() -> {
+                start.await();
+                try {
+                    patientService.addPatient(patient);
+                    return true;
+                } catch (PatientAlreadyExistException e) {
+                    return false;
+                }
+            }));
+        }
+
+        // When
+        start.countDown();
+        int successes = 0;
+        int duplicates = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get(30, TimeUnit.SECONDS)) {
+                successes++;
+            } else {
+                duplicates++;
+            }
+        }
+        executor.shutdown();
+
+        // Then
+        int savedPatients = successes;
+        int rejectedPatients = duplicates;
+        assertAll(
+                () -> assertThat(savedPatients).isEqualTo(1),
+                () -> assertThat(rejectedPatients).isEqualTo(THREADS - 1),
+                () -> assertThat(patientRepository.findAll()).hasSize(1)
+        );
+    }
+}
@@ -3,6 +3,11 @@ package com.mediscreen.patientmicroservice.integration_test;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mediscreen.patientmicroservice.domain.Patient;
 import com.mediscreen.patientmicroservice.test_repository.PatientTestRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -10,10 +15,15 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.transaction.TestTransaction;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import java.net.URI;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
@@ -35,6 +45,10 @@ public class PatientControllerIT {
     private PatientTestRepository patientRepository;
     @Autowired
     private ObjectMapper objectMapper;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private EntityManager entityManager;
 
     @Test
         // @Sql(statements = "INSERT INTO patients (last_name, first_name, date_of_birth, home_address, phone_number, sex) VALUES ('LastName1', 'FirstName1', '2022-08-31', '12 rue de Paris', '121-262-9996', 'F'), ('LastName2', 'FirstName2', '2023-03-24', '36 Rue Jean Jaurès', '756-311-4166', 'M')", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
@@ -60,6 +74,153 @@ public class PatientControllerIT {
         assertThat(patientRepository.findAll().size()).isEqualTo(2);
     }
 
+    @Test
+    void getAllPatientsShouldBePagedByCursor() throws Exception {
+        // Given
+        LocalDate dateOfBirth = LocalDate.of(2022, 8, 31);
+
+        patientRepository.saveAll(List.of(
+                new Patient("LastName1", "FirstName1", dateOfBirth, "F", "21 Rue de Paris", "121-262-9996"),
+                new Patient("LastName2", "FirstName2", dateOfBirth, "M", "36 Rue Jean Jaurès", "756-311-4166"),
+                new Patient("LastName3", "FirstName3", dateOfBirth, "M", "38 Rue Jean Jaurès", "756-311-4167")));
+
+        // Then
+        mockMvc.perform(get("/api/patients").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(2)))
+                .andExpect(jsonPath("$[0].lastName", is("LastName1")))
+                .andExpect(header().string("Link", "<http://localhost/api/patients?after=2&limit=2>; rel=\"next\""));
+
+        mockMvc.perform(get("/api/patients").param("after", "2").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(1)))
+                .andExpect(jsonPath("$[0].lastName", is("LastName3")))
+                .andExpect(header().doesNotExist("Link"));
+    }
+
+    @Test
+    void getAllPatientsWithSummaryViewShouldNotLoadEntities() throws Exception {
+        // Given
+        LocalDate dateOfBirth = LocalDate.of(2022, 8, 31);
+        patientRepository.saveAllAndFlush(List.of(
+                new Patient("LastName1", "FirstName1", dateOfBirth, "F", "21 Rue de Paris", "121-262-9996"),
+                new Patient("LastName2", "FirstName2", dateOfBirth, "M", "36 Rue Jean Jaurès", "756-311-4166")));
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+
+        // When
+        entityManager.clear();
+        statistics.clear();
+        mockMvc.perform(get("/api/patients").param("view", "summary"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[1].lastName", is("LastName2")))
+                .andExpect(jsonPath("$[1].sex", is("M")))
+                .andExpect(jsonPath("$[1].phoneNumber").doesNotExist());
+
+        // Then
+        assertThat(statistics.getEntityLoadCount()).isEqualTo(0L);
+    }
+
+    @Test
+    void getPatientChangesShouldReturnChangedAndDeletedPatients() throws Exception {
+        // Given
+        LocalDate dateOfBirth = LocalDate.of(2022, 8, 31);
+        List<Patient> savedPatients = patientRepository.saveAllAndFlush(List.of(
+                new Patient("LastName1", "FirstName1", dateOfBirth, "F", "21 Rue de Paris", "121-262-9996"),
+                new Patient("LastName2", "FirstName2", dateOfBirth, "M", "36 Rue Jean Jaurès", "756-311-4166")));
+        Long id1 = savedPatients.get(0).getId();
+        Long id2 = savedPatients.get(1).getId();
+        mockMvc.perform(delete("/api/patients/{id}", id2))
+                .andExpect(status().isOk());
+        entityManager.flush();
+
+        // Then
+        mockMvc.perform(get("/api/patients/changes"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changed.length()", is(1)))
+                .andExpect(jsonPath("$.changed[0].id", is(id1.intValue())))
+                .andExpect(jsonPath("$.changed[0].createdAt").exists())
+                .andExpect(jsonPath("$.deleted[0].patientId", is(id2.intValue())))
+                .andExpect(jsonPath("$.afterId", is(id2.intValue())))
+                .andExpect(jsonPath("$.hasMore", is(false)));
+    }
+
+    @Test
+    void getPatientChangesShouldBePagedByCursor() throws Exception {
+        // Given
+        LocalDate dateOfBirth = LocalDate.of(2022, 8, 31);
+        patientRepository.saveAllAndFlush(List.of(
+                new Patient("LastName1", "FirstName1", dateOfBirth, "F", "21 Rue de Paris", "121-262-9996"),
+                new Patient("LastName2", "FirstName2", dateOfBirth, "M", "36 Rue Jean Jaurès", "756-311-4166"),
+                new Patient("LastName3", "FirstName3", dateOfBirth, "M", "36 Rue Jean Jaurès", "756-311-4166")));
+
+        // When
+        MvcResult firstPage = mockMvc.perform(get("/api/patients/changes").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changed.length()", is(2)))
+                .andExpect(jsonPath("$.hasMore", is(true)))
+                .andReturn();
+        String next = firstPage.getResponse().getHeader("Link").replaceAll("^<(.*)>.*$", "$1");
+
+        // Then
+        mockMvc.perform(get(URI.create(next)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changed.length()", is(1)))
+                .andExpect(jsonPath("$.changed[0].lastName", is("LastName3")))
+                .andExpect(jsonPath("$.hasMore", is(false)));
+    }
+
+    @Test
+    void getPatientsByIdsShouldUseOneQueryAndReturnMissingIds() throws Exception {
+        // Given
+        LocalDate dateOfBirth = LocalDate.of(2022, 8, 31);
+        List<Patient> savedPatients = patientRepository.saveAllAndFlush(List.of(
+                new Patient("LastName1", "FirstName1", dateOfBirth, "F", "21 Rue de Paris", "121-262-9996"),
+                new Patient("LastName2", "FirstName2", dateOfBirth, "M", "36 Rue Jean Jaurès", "756-311-4166")));
+        Long id1 = savedPatients.get(0).getId();
+        Long id2 = savedPatients.get(1).getId();
+        Long missingId = id2 + 1000;
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+
+        // When
+        entityManager.clear();
+        statistics.clear();
+        mockMvc.perform(get("/api/patients").param("ids", "%d,%d,%d".formatted(id2, missingId, id1)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.patients[0].lastName", is("LastName2")))
+                .andExpect(jsonPath("$.patients[1].lastName", is("LastName1")))
+                .andExpect(jsonPath("$.missingIds[0]", is(missingId.intValue())));
+
+        // Then
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1L);
+    }
+
+    @Test
+    void exportPatientsShouldReturnNdjson() throws Exception {
+        // Given
+        LocalDate dateOfBirth = LocalDate.of(2022, 8, 31);
+
+        patientRepository.saveAll(List.of(
+                new Patient("LastName1", "FirstName1", dateOfBirth, "F", "21 Rue de Paris", "121-262-9996"),
+                new Patient("LastName2", "FirstName2", dateOfBirth, "M", "36 Rue Jean Jaurès", "756-311-4166")));
+        // the export runs on an async thread, in its own transaction
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+
+        // Then
+        MvcResult mvcResult = mockMvc.perform(get("/api/patients/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertThat(lines.length).isEqualTo(2);
+        assertThat(objectMapper.readValue(lines[1], Patient.class).getLastName()).isEqualTo("LastName2");
+    }
+
     @Test
     void getPatientByIdShouldReturnPatient() throws Exception {
         // Given
@@ -78,6 +239,46 @@ public class PatientControllerIT {
                 .andExpect(jsonPath("$.id", is(1)));
     }
 
+    @Test
+    void getPatientByIdShouldReturnNotModifiedForCurrentVersion() throws Exception {
+        // Given
+        Patient patient = new Patient("LastName", "FirstName", LocalDate.of(2023, 4, 12), "F", "21 Rue de Paris", "121-262-9599");
+        patientRepository.saveAndFlush(patient);
+
+        // When
+        String eTag = mockMvc.perform(get("/api/patients/{id}", 1))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version", is(0)))
+                .andReturn().getResponse().getHeader("ETag");
+
+        // Then
+        assertThat(eTag).isEqualTo("\"0\"");
+        mockMvc.perform(get("/api/patients/{id}", 1).header("If-None-Match", eTag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void getAllPatientsShouldReturnNotModifiedUntilAPatientIsDeleted() throws Exception {
+        // Given
+        LocalDate dateOfBirth = LocalDate.of(2023, 4, 12);
+        patientRepository.saveAndFlush(new Patient("LastName1", "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262-9599"));
+        Patient patient = patientRepository.saveAndFlush(new Patient("LastName2", "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262-9599"));
+        String eTag = mockMvc.perform(get("/api/patients"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        mockMvc.perform(get("/api/patients").header("If-None-Match", eTag))
+                .andExpect(status().isNotModified());
+
+        // When
+        mockMvc.perform(delete("/api/patients/{id}", patient.getId()))
+                .andExpect(status().isOk());
+
+        // Then
+        mockMvc.perform(get("/api/patients").header("If-None-Match", eTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(1)));
+    }
+
     @Test
     void getPatientByIdShouldThrowPatientNotFountException() throws Exception {
         mockMvc.perform(get("/api/patients/{id}", 1))
@@ -88,6 +289,26 @@ public class PatientControllerIT {
         );
     }
 
+    @Test
+    void getPatientByIdShouldBeTimedAndCountNotFound() throws Exception {
+        mockMvc.perform(get("/api/patients/{id}", 1))
+                .andExpect(status().isNotFound());
+
+        Timer findById = meterRegistry.find("spring.data.repository.invocations")
+                .tag("repository", "PatientRepository")
+                .tag("method", "findById")
+                .timer();
+        Counter notFound = meterRegistry.find("patient.exceptions")
+                .tag("exception", "PatientNotFoundException")
+                .counter();
+        assertAll(
+                () -> assertThat(findById).isNotNull(),
+                () -> assertThat(findById.count()).isEqualTo(1L),
+                () -> assertThat(notFound).isNotNull(),
+                () -> assertThat(notFound.count()).isGreaterThanOrEqualTo(1.0)
+        );
+    }
+
     @Test
     void getPatientByLastName() throws Exception {
         // Given
@@ -184,6 +405,44 @@ public class PatientControllerIT {
         );
     }
 
+    @Test
+    void addPatientsShouldSaveAllPatients() throws Exception {
+        // Given
+        LocalDate dateOfBirth = LocalDate.of(2023, 4, 12);
+        List<Patient> newPatients = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            newPatients.add(new Patient("LastName" + i, "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262-9599"));
+        }
+
+        // Then
+        mockMvc.perform(post("/api/patients/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(newPatients)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.length()", is(120)));
+
+        assertThat(patientRepository.findAll().size()).isEqualTo(120);
+    }
+
+    @Test
+    void addPatientsWithExistingLastNameShouldSaveNothing() throws Exception {
+        // Given
+        LocalDate dateOfBirth = LocalDate.of(2023, 4, 12);
+        patientRepository.save(new Patient("ExistingLastName", "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262-9599"));
+
+        List<Patient> newPatients = List.of(
+                new Patient("NewLastName", "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262-9599"),
+                new Patient("ExistingLastName", "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262-9599"));
+
+        // Then
+        mockMvc.perform(post("/api/patients/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(newPatients)))
+                .andExpect(status().isBadRequest());
+
+        assertThat(patientRepository.findAll().size()).isEqualTo(1);
+    }
+
     @Test
     void updatePatientByIdShouldBeSuccessful() throws Exception {
         // Given
@@ -203,6 +462,71 @@ public class PatientControllerIT {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    void updatePatientByIdWithIfMatchShouldUpdateInOneStatement() throws Exception {
+        // Given
+        LocalDate dateOfBirth = LocalDate.of(2023, 4, 12);
+        patientRepository.saveAndFlush(new Patient("LastName", "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262-9599"));
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+
+        // When
+        entityManager.clear();
+        statistics.clear();
+        mockMvc.perform(put("/api/patients/{id}", 1)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new Patient("LastName", "FirstName", dateOfBirth, "M", "21 Rue de Paris", "121-262-9599"))))
+                .andExpect(status().isOk());
+        entityManager.flush();
+        long statementsWithoutIfMatch = statistics.getPrepareStatementCount();
+
+        entityManager.clear();
+        statistics.clear();
+        mockMvc.perform(put("/api/patients/{id}", 1)
+                        .header("If-Match", "\"1\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new Patient("LastName", "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262-9599"))))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"2\""));
+        entityManager.flush();
+        long statementsWithIfMatch = statistics.getPrepareStatementCount();
+
+        // Then
+        assertAll(
+                () -> assertThat(statementsWithoutIfMatch).isEqualTo(3L),
+                () -> assertThat(statementsWithIfMatch).isEqualTo(1L),
+                () -> assertThat(patientRepository.findById(1L).get().getVersion()).isEqualTo(2L)
+        );
+    }
+
+    @Test
+    void updatePatientByIdWithStaleIfMatchShouldReturnPreconditionFailed() throws Exception {
+        // Given
+        LocalDate dateOfBirth = LocalDate.of(2023, 4, 12);
+        patientRepository.saveAndFlush(new Patient("LastName", "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262-9599"));
+
+        // Then
+        mockMvc.perform(put("/api/patients/{id}", 1)
+                        .header("If-Match", "\"7\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new Patient("LastName", "FirstName", dateOfBirth, "M", "21 Rue de Paris", "121-262-9599"))))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void updatePatientByIdWithIfMatchAndExistingLastNameShouldReturnBadRequest() throws Exception {
+        // Given
+        LocalDate dateOfBirth = LocalDate.of(2023, 4, 12);
+        patientRepository.saveAndFlush(new Patient("LastName", "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262-9599"));
+        patientRepository.saveAndFlush(new Patient("OtherLastName", "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262-9599"));
+
+        // Then
+        mockMvc.perform(put("/api/patients/{id}", 2)
+                        .header("If-Match", "\"0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new Patient("LastName", "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262-9599"))))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void updatePatientByIdShouldThrowPatientAlreadyExistException() throws Exception {
         // Given
@@ -268,6 +592,30 @@ public class PatientControllerIT {
 
     }
 
+    @Test
+    void deletePatientByIdShouldSendOneDeleteWithoutLoadingPatient() throws Exception {
+        // Given
+        patientRepository.saveAndFlush(new Patient("LastName", "FirstName", LocalDate.of(2023, 4, 12), "F", "21 Rue de Paris", "121-262-9599"));
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+
+        // When
+        entityManager.clear();
+        statistics.clear();
+        mockMvc.perform(delete("/api/patients/{id}", 1))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.description").value("Patient with lastName: LastName and firstName: FirstName has been successfully deleted from DB!"));
+
+        // Then
+        entityManager.flush();
+        assertAll(
+                () -> assertThat(statistics.getEntityLoadCount()).isEqualTo(0L),
+                () -> assertThat(statistics.getEntityDeleteCount()).isEqualTo(0L),
+                // summary select, delete, then the tombstone insert sent at flush
+                () -> assertThat(statistics.getPrepareStatementCount()).isEqualTo(3L),
+                () -> assertThat(patientRepository.findById(1L)).isEmpty()
+        );
+    }
+
     @Test
     void deletePatientByIdThrowPatientNotFoundException() throws Exception {
         // Given
@@ -0,0 +1,102 @@
+package com.mediscreen.patientmicroservice.integration_test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mediscreen.patientmicroservice.domain.Patient;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Two in-memory H2 DBs stand in for the primary and the replica. Nothing replicates between them,
+ * so a row only present in one DB shows where a request has been sent.
+ */
+@SpringBootTest(properties = "spring.datasource.replica.url=jdbc:h2:mem:replica")
+@ActiveProfiles("h2-test")
+@AutoConfigureMockMvc
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class ReadReplicaRoutingIT {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private DataSource primaryDataSource;
+    @Autowired
+    @Qualifier("replicaDataSource")
+    private DataSource replicaDataSource;
+
+    /**
+     * Copies the schema created by Hibernate on the primary to the replica, before the search index is built from the replica.
+     */
+    @TestConfiguration
+    static class ReplicaSchemaConfiguration {
+        @EventListener(ContextRefreshedEvent.class)
+        public void copySchema(ContextRefreshedEvent event) throws IOException {
+            DataSource primary = event.getApplicationContext().getBean("primaryDataSource", DataSource.class);
+            DataSource replica = event.getApplicationContext().getBean("replicaDataSource", DataSource.class);
+            Path script = Files.createTempFile("patients-schema", ".sql");
+            try {
+                new JdbcTemplate(primary).execute("SCRIPT NODATA TO '%s'".formatted(script));
+                new JdbcTemplate(replica).execute("RUNSCRIPT FROM '%s'".formatted(script));
+            } finally {
+                Files.deleteIfExists(script);
+            }
+        }
+    }
+
+    @Test
+    void getPatientByIdShouldReadFromReplica() throws Exception {
+        // Given
+        new JdbcTemplate(replicaDataSource).update("insert into patients (id, last_name, first_name, date_of_birth, sex, home_address, phone_number, version, created_at, updated_at) " +
+                "values (42, 'ReplicaLastName', 'FirstName', '2023-04-12', 'F', '21 Rue de Paris', '121-262-9599', 0, current_timestamp, current_timestamp)");
+
+        // Then
+        mockMvc.perform(get("/api/patients/{id}", 42))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.lastName", is("ReplicaLastName")));
+        assertThat(new JdbcTemplate(primaryDataSource).queryForObject("select count(*) from patients", Long.class)).isEqualTo(0L);
+    }
+
+    @Test
+    void addPatientShouldWriteToPrimary() throws Exception {
+        // Given
+        Patient patient = new Patient("LastName", "FirstName", LocalDate.of(2023, 4, 12), "F", "21 Rue de Paris", "121-262-9599");
+
+        // When
+        mockMvc.perform(post("/api/patients")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(patient)))
+                .andExpect(status().isCreated());
+
+        // Then
+        assertAll(
+                () -> assertThat(new JdbcTemplate(primaryDataSource).queryForObject("select count(*) from patients", Long.class)).isEqualTo(1L),
+                () -> assertThat(new JdbcTemplate(replicaDataSource).queryForObject("select count(*) from patients", Long.class)).isEqualTo(0L)
+        );
+    }
+}
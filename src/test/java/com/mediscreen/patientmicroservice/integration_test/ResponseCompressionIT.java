@@ -0,0 +1,108 @@
+package com.mediscreen.patientmicroservice.integration_test;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+/**
+ * Compression is done by Tomcat, so it is measured on a real server, with a client that does not decompress by itself.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("h2-test")
+@DirtiesContext
+public class ResponseCompressionIT {
+    private static final int PATIENTS = 100_000;
+
+    @LocalServerPort
+    private int port;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @BeforeEach
+    void init() {
+        if (jdbcTemplate.queryForObject("select count(*) from patients", Long.class) == 0) {
+            jdbcTemplate.update("insert into patients (id, last_name, first_name, date_of_birth, sex, home_address, phone_number, version, created_at, updated_at) " +
+                    "select x, concat('LastName', x), concat('FirstName', x), dateadd(day, -x, date '2023-04-12'), " +
+                    "case when mod(x, 2) = 0 then 'F' else 'M' end, '21 Rue de Paris', '121-262-9599', 0, current_timestamp, current_timestamp " +
+                    "from system_range(1, %d)".formatted(PATIENTS));
+        }
+    }
+
+    @Test
+    void getAllPatientsShouldBeGzippedWhileStreamed() throws Exception {
+        // When
+        HttpResponse<byte[]> plain = get("/api/patients", null);
+        HttpResponse<byte[]> gzipped = get("/api/patients", "gzip");
+
+        // Then
+        byte[] unzipped = gunzip(gzipped.body());
+        System.out.printf("%d patients: %d bytes, %d bytes gzipped%n", PATIENTS, plain.body().length, gzipped.body().length);
+        assertAll(
+                () -> assertThat(gzipped.headers().firstValue("Content-Encoding")).hasValue("gzip"),
+                () -> assertThat(gzipped.headers().firstValue("Transfer-Encoding")).hasValue("chunked"),
+                () -> assertThat(gzipped.headers().firstValue("Content-Length")).isEmpty(),
+                () -> assertThat(plain.headers().firstValue("Content-Encoding")).isEmpty(),
+                () -> assertThat(unzipped).isEqualTo(plain.body()),
+                () -> assertThat(gzipped.body().length).isLessThan(plain.body().length / 5)
+        );
+    }
+
+    @Test
+    void exportPatientsShouldBeGzippedWhileStreamed() throws Exception {
+        // When
+        HttpResponse<byte[]> gzipped = get("/api/patients/export", "gzip");
+
+        // Then
+        byte[] unzipped = gunzip(gzipped.body());
+        System.out.printf("%d exported patients: %d bytes, %d bytes gzipped%n", PATIENTS, unzipped.length, gzipped.body().length);
+        assertAll(
+                () -> assertThat(gzipped.headers().firstValue("Content-Encoding")).hasValue("gzip"),
+                () -> assertThat(gzipped.headers().firstValue("Transfer-Encoding")).hasValue("chunked"),
+                () -> assertThat(new String(unzipped).lines().count()).isEqualTo(PATIENTS)
+        );
+    }
+
+    @Test
+    void smallResponseShouldNotBeCompressed() throws Exception {
+        // When
+        HttpResponse<byte[]> response = get("/api/patients/1", "gzip");
+
+        // Then
+        assertThat(response.headers().firstValue("Content-Encoding")).isEmpty();
+    }
+
+    private HttpResponse<byte[]> get(String path, String acceptEncoding) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:%d%s".formatted(port, path))).GET();
+        if (acceptEncoding != null) {
+            request.header("Accept-Encoding", acceptEncoding);
+        }
+        HttpResponse<byte[]> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        assertThat(response.statusCode()).isEqualTo(200);
+        return response;
+    }
+
+    private static byte[] gunzip(byte[] gzipped) throws IOException {
+        try (InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+            return inputStream.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.mediscreen.patientmicroservice.integration_test;
+
+import com.mediscreen.patientmicroservice.PatientMicroserviceApplication;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+/**
+ * Startup time of the application in a new JVM, so class loading is measured too, from the JVM start to accepting traffic.
+ * The application exits once ready (patient.startup.exit-after=ready) and logs its JVM uptime.
+ * The median times of each run mode are appended to build/reports/startup/history.csv, to track improvements.
+ * It starts {@value #RUNS} JVMs per run mode: tagged {@value #TAG}, it is left out of the test task,
+ * run it with ./gradlew startupTime.
+ */
+@Tag(StartupTimeIT.TAG)
+public class StartupTimeIT {
+    static final String TAG = "startup";
+    private static final String HEADER = "timestamp,runs,default_ms,fast_startup_ms";
+    private static final int RUNS = 3;
+    private static final long TIMEOUT_SECONDS = 120;
+    private static final Pattern READY_UPTIME = Pattern.compile("Application ready (\\d+) ms after the JVM start");
+
+    @Test
+    void applicationShouldStartInEachRunMode() throws Exception {
+        // When
+        long defaultMillis = medianStartupMillis("h2-test");
+        long fastStartupMillis = medianStartupMillis("h2-test,fast-startup");
+
+        // Then
+        writeReport(defaultMillis, fastStartupMillis);
+        assertAll(
+                () -> assertThat(defaultMillis).isPositive(),
+                () -> assertThat(fastStartupMillis).isPositive()
+        );
+    }
+
+    private static void writeReport(long defaultMillis, long fastStartupMillis) throws IOException {
+        Path reportDir = Path.of(System.getProperty("startup.reportDir", "build/reports/startup"));
+        Files.createDirectories(reportDir);
+        Path history = reportDir.resolve("history.csv");
+        StringBuilder lines = new StringBuilder();
+        if (Files.notExists(history)) {
+            lines.append(HEADER).append('\n');
+        }
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        lines.append("%s,%d,%d,%d".formatted(timestamp, RUNS, defaultMillis, fastStartupMillis)).append('\n');
+        Files.writeString(history, lines, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private long medianStartupMillis(String profiles) throws IOException, InterruptedException, URISyntaxException {
+        List<Long> startupMillis = new ArrayList<>();
+        for (int i = 0; i < RUNS; i++) {
+            startupMillis.add(startupMillis(profiles));
+        }
+        startupMillis.sort(null);
+        return startupMillis.get(RUNS / 2);
+    }
+
+    /**
+     * The test class path without the test classes, which the component scan would pick up outside of a test context.
+     */
+    private static String applicationClassPath() throws URISyntaxException {
+        Path testClasses = Paths.get(StartupTimeIT.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        return Arrays.stream(System.getProperty("java.class.path").split(File.pathSeparator))
+                .filter(entry -> !Paths.get(entry).toAbsolutePath().equals(testClasses.toAbsolutePath()))
+                .collect(Collectors.joining(File.pathSeparator));
+    }
+
+    private long startupMillis(String profiles) throws IOException, InterruptedException, URISyntaxException {
+        Path java = Paths.get(System.getProperty("java.home"), "bin", "java");
+        Path log = Files.createTempFile("startup", ".log");
+        try {
+            Process process = new ProcessBuilder(java.toString(),
+                    "-cp", applicationClassPath(),
+                    "-Dspring.profiles.active=" + profiles,
+                    "-Dserver.port=0",
+                    "-Dpatient.startup.exit-after=ready",
+                    PatientMicroserviceApplication.class.getName())
+                    .redirectErrorStream(true)
+                    .redirectOutput(log.toFile())
+                    .start();
+            if (!process.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+            String output = Files.readString(log);
+            Matcher matcher = READY_UPTIME.matcher(output);
+            assertThat(matcher.find()).as("application ready with profiles %s, output:%n%s", profiles, output).isTrue();
+            return Long.parseLong(matcher.group(1));
+        } finally {
+            Files.deleteIfExists(log);
+        }
+    }
+}
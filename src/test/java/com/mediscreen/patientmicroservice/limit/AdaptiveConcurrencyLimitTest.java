@@ -0,0 +1,71 @@
+package com.mediscreen.patientmicroservice.limit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdaptiveConcurrencyLimitTest {
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(50);
+
+    @Test
+    void tryAcquireShouldRejectAboveTheLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit("read", 2, 1, 10);
+
+        assertThat(limit.tryAcquire()).isTrue();
+        assertThat(limit.tryAcquire()).isTrue();
+        assertThat(limit.tryAcquire()).isFalse();
+        assertThat(limit.getRejected()).isEqualTo(1L);
+
+        limit.release(FAST);
+
+        assertThat(limit.getInFlight()).isEqualTo(1);
+        assertThat(limit.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void steadyLatencyAtFullLoadShouldRaiseTheLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit("read", 10, 1, 100);
+
+        for (int i = 0; i < 50; i++) {
+            limit.onSample(FAST, limit.getLimit());
+        }
+
+        assertThat(limit.getLimit()).isGreaterThan(20);
+    }
+
+    @Test
+    void risingLatencyShouldLowerTheLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit("read", 50, 2, 100);
+        for (int i = 0; i < 600; i++) {
+            limit.onSample(FAST, limit.getLimit());
+        }
+        int limitBefore = limit.getLimit();
+
+        for (int i = 0; i < 20; i++) {
+            limit.onSample(SLOW, limit.getLimit());
+        }
+
+        assertThat(limit.getLimit()).isLessThan(limitBefore / 2).isGreaterThanOrEqualTo(2);
+    }
+
+    @Test
+    void samplesBelowHalfTheLimitShouldNotChangeIt() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit("read", 20, 1, 100);
+
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(i % 2 == 0 ? FAST : SLOW, 1);
+        }
+
+        assertThat(limit.getLimit()).isEqualTo(20);
+    }
+
+    @Test
+    void constructorShouldRejectInconsistentLimits() {
+        assertThatThrownBy(() -> new AdaptiveConcurrencyLimit("write", 10, 20, 100))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
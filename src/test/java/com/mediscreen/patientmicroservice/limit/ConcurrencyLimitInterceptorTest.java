@@ -0,0 +1,55 @@
+package com.mediscreen.patientmicroservice.limit;
+
+import com.mediscreen.patientmicroservice.exceptions.PatientServiceUnavailableException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConcurrencyLimitInterceptorTest {
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+    private AdaptiveConcurrencyLimit readLimit;
+    private AdaptiveConcurrencyLimit writeLimit;
+    private ConcurrencyLimitInterceptor concurrencyLimitInterceptor;
+
+    @BeforeEach
+    void init() {
+        readLimit = new AdaptiveConcurrencyLimit("read", 1, 1, 1);
+        writeLimit = new AdaptiveConcurrencyLimit("write", 1, 1, 1);
+        concurrencyLimitInterceptor = new ConcurrencyLimitInterceptor(readLimit, writeLimit, Duration.ofSeconds(2));
+    }
+
+    @Test
+    void preHandleShouldRejectReadsAboveTheReadLimit() {
+        // Given
+        concurrencyLimitInterceptor.preHandle(new MockHttpServletRequest("GET", "/api/patients/1"), response, null);
+
+        // Then
+        assertThatThrownBy(() -> concurrencyLimitInterceptor.preHandle(new MockHttpServletRequest("GET", "/api/patients/2"), response, null))
+                .isInstanceOf(PatientServiceUnavailableException.class)
+                .extracting("retryAfter").isEqualTo(Duration.ofSeconds(2));
+        assertThat(concurrencyLimitInterceptor.preHandle(new MockHttpServletRequest("POST", "/api/patients"), response, null)).isTrue();
+        assertThat(readLimit.getRejected()).isEqualTo(1L);
+        assertThat(writeLimit.getRejected()).isZero();
+    }
+
+    @Test
+    void afterCompletionShouldReleaseTheAdmittedRequest() {
+        // Given
+        MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/api/patients/1");
+        concurrencyLimitInterceptor.preHandle(request, response, null);
+
+        // When
+        concurrencyLimitInterceptor.afterCompletion(request, response, null, null);
+        concurrencyLimitInterceptor.afterCompletion(request, response, null, null);
+
+        // Then
+        assertThat(writeLimit.getInFlight()).isZero();
+        assertThat(concurrencyLimitInterceptor.preHandle(new MockHttpServletRequest("DELETE", "/api/patients/1"), response, null)).isTrue();
+    }
+}
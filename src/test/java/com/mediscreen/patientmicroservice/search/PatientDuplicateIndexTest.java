@@ -0,0 +1,86 @@
+package com.mediscreen.patientmicroservice.search;
+
+import com.mediscreen.patientmicroservice.domain.Patient;
+import com.mediscreen.patientmicroservice.repository.PatientRepository;
+import com.mediscreen.patientmicroservice.service.PatientChangeEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.groups.Tuple.tuple;
+
+@ExtendWith(MockitoExtension.class)
+class PatientDuplicateIndexTest {
+    @Mock
+    private PatientRepository patientRepository;
+    private PatientDuplicateIndex patientDuplicateIndex;
+
+    private final LocalDate dateOfBirth = LocalDate.of(1980, 4, 12);
+
+    @BeforeEach
+    void init() {
+        patientDuplicateIndex = new PatientDuplicateIndex(patientRepository, 0.75);
+        patientDuplicateIndex.put(new Patient(1L, "Smith", "John", dateOfBirth, "M", "21 Rue de Paris", "121-262-9996"));
+        patientDuplicateIndex.put(new Patient(2L, "Smyth", "John", dateOfBirth, "M", "21 Rue de Paris", "121-262-9996"));
+        patientDuplicateIndex.put(new Patient(3L, "Smith", "Anna", LocalDate.of(1995, 1, 3), "F", "36 Rue Jean Jaurès", "756-311-4416"));
+        patientDuplicateIndex.put(new Patient(4L, "Jaurès", "Jean", dateOfBirth, "M", "36 Rue Jean Jaurès", "756-311-4416"));
+    }
+
+    @Test
+    void findCandidatesShouldReturnPhoneticallySimilarNameBornTheSameDay() {
+        Patient patient = new Patient("Smithe", "Jon", dateOfBirth, "M", "21 Rue de Paris", "121-262-9996");
+
+        List<PatientDuplicateCandidate> candidates = patientDuplicateIndex.findCandidates(patient, 10);
+
+        assertThat(candidates).extracting(PatientDuplicateCandidate::id).containsExactlyInAnyOrder(1L, 2L);
+    }
+
+    @Test
+    void findCandidatesShouldCatchSwappedDayAndMonth() {
+        Patient patient = new Patient("Smith", "John", LocalDate.of(1980, 12, 4), "M", "21 Rue de Paris", "121-262-9996");
+
+        List<PatientDuplicateCandidate> candidates = patientDuplicateIndex.findCandidates(patient, 10);
+
+        assertThat(candidates).extracting(PatientDuplicateCandidate::id).contains(1L);
+    }
+
+    @Test
+    void findCandidatesShouldNotReturnThePatientItself() {
+        Patient patient = new Patient(1L, "Smith", "John", dateOfBirth, "M", "21 Rue de Paris", "121-262-9996");
+
+        List<PatientDuplicateCandidate> candidates = patientDuplicateIndex.findCandidates(patient, 10);
+
+        assertThat(candidates).extracting(PatientDuplicateCandidate::id).containsExactly(2L);
+        assertThat(candidates.get(0).score()).isGreaterThan(0.9);
+    }
+
+    @Test
+    void findCandidatesShouldIgnoreDifferentPeopleWithTheSameLastName() {
+        Patient patient = new Patient("Smith", "Anna", dateOfBirth, "F", "21 Rue de Paris", "999-999-9999");
+
+        List<PatientDuplicateCandidate> candidates = patientDuplicateIndex.findCandidates(patient, 10);
+
+        assertThat(candidates).extracting(PatientDuplicateCandidate::id).doesNotContain(3L);
+    }
+
+    @Test
+    void findDuplicatePairsShouldReturnEachPairOnce() {
+        List<PatientDuplicatePair> pairs = patientDuplicateIndex.findDuplicatePairs(10);
+
+        assertThat(pairs).extracting(PatientDuplicatePair::id, PatientDuplicatePair::otherId)
+                .containsExactly(tuple(1L, 2L));
+    }
+
+    @Test
+    void onPatientChangeShouldRemoveDeletedPatient() {
+        patientDuplicateIndex.onPatientChange(PatientChangeEvent.deleted(2L, null));
+
+        assertThat(patientDuplicateIndex.findDuplicatePairs(10)).isEmpty();
+    }
+}
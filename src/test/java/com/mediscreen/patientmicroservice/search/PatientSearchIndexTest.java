@@ -0,0 +1,92 @@
+package com.mediscreen.patientmicroservice.search;
+
+import com.mediscreen.patientmicroservice.domain.Patient;
+import com.mediscreen.patientmicroservice.domain.PatientSummary;
+import com.mediscreen.patientmicroservice.repository.PatientRepository;
+import com.mediscreen.patientmicroservice.service.PatientChangeEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PatientSearchIndexTest {
+    @Mock
+    private PatientRepository patientRepository;
+    @InjectMocks
+    private PatientSearchIndex patientSearchIndex;
+
+    private final LocalDate dateOfBirth = LocalDate.of(1980, 4, 12);
+
+    @BeforeEach
+    void init() {
+        patientSearchIndex.put(new Patient(1L, "Smith", "John", dateOfBirth, "M", "21 Rue de Paris", "121-262-9996"));
+        patientSearchIndex.put(new Patient(2L, "Smithson", "Anna", dateOfBirth, "F", "21 Rue de Paris", "121-262-9996"));
+        patientSearchIndex.put(new Patient(3L, "Jaurès", "Jean", dateOfBirth, "M", "36 Rue Jean Jaurès", "756-311-4416"));
+    }
+
+    @Test
+    void searchShouldReturnExactMatchBeforePrefixMatch() {
+        List<PatientSearchHit> hits = patientSearchIndex.search("smith", 10);
+
+        assertThat(hits).extracting(PatientSearchHit::id).containsExactly(1L, 2L);
+        assertThat(hits.get(0).score()).isGreaterThan(hits.get(1).score());
+    }
+
+    @Test
+    void searchShouldMatchPrefixOfFirstName() {
+        List<PatientSearchHit> hits = patientSearchIndex.search("an", 10);
+
+        assertThat(hits).extracting(PatientSearchHit::id).containsExactly(2L);
+    }
+
+    @Test
+    void searchShouldTolerateTyposAndAccents() {
+        assertThat(patientSearchIndex.search("smyth", 10)).extracting(PatientSearchHit::id).contains(1L);
+        assertThat(patientSearchIndex.search("jaures", 10)).extracting(PatientSearchHit::id).containsExactly(3L);
+    }
+
+    @Test
+    void searchShouldRankPatientsMatchingEveryWordFirst() {
+        List<PatientSearchHit> hits = patientSearchIndex.search("smith jo", 10);
+
+        assertThat(hits.get(0).id()).isEqualTo(1L);
+    }
+
+    @Test
+    void searchShouldRespectLimitAndIgnoreBlankQuery() {
+        assertThat(patientSearchIndex.search("smi", 1)).hasSize(1);
+        assertThat(patientSearchIndex.search("  ", 10)).isEmpty();
+    }
+
+    @Test
+    void onPatientChangeShouldReindexUpdatedPatientAndRemoveDeletedOne() {
+        Patient renamed = new Patient(1L, "Dupont", "John", dateOfBirth, "M", "21 Rue de Paris", "121-262-9996");
+
+        patientSearchIndex.onPatientChange(PatientChangeEvent.updated(1L, null, renamed));
+        patientSearchIndex.onPatientChange(PatientChangeEvent.deleted(2L, new PatientSummary(2L, "Smithson", "Anna", dateOfBirth, "F")));
+
+        assertThat(patientSearchIndex.search("smith", 10)).isEmpty();
+        assertThat(patientSearchIndex.search("dupo", 10)).extracting(PatientSearchHit::id).containsExactly(1L);
+        assertThat(patientSearchIndex.size()).isEqualTo(2);
+    }
+
+    @Test
+    void rebuildShouldLoadAllPages() {
+        when(patientRepository.findByIdGreaterThanOrderByIdAsc(0L, PageRequest.of(0, 1000)))
+                .thenReturn(List.of(new Patient(10L, "Martin", "Paul", dateOfBirth, "M", "21 Rue de Paris", "121-262-9996")));
+
+        patientSearchIndex.rebuild();
+
+        assertThat(patientSearchIndex.search("mart", 10)).extracting(PatientSearchHit::id).containsExactly(10L);
+    }
+}
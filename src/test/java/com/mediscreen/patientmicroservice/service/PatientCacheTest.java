@@ -0,0 +1,161 @@
+package com.mediscreen.patientmicroservice.service;
+
+import com.mediscreen.patientmicroservice.domain.Patient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PatientCacheTest {
+    private PatientCache patientCache;
+
+    @BeforeEach
+    void init() {
+        patientCache = new PatientCache(100, Duration.ofMinutes(1));
+    }
+
+    @Test
+    void putShouldCacheACopyByIdAndByLastName() {
+        // Given
+        Patient patient = new Patient(1L, "LastName", "FirstName", LocalDate.of(2023, 4, 11), "F", "21 Rue de Paris", "121-262-9996");
+
+        // When
+        patientCache.put(patient);
+        patient.setFirstName("ChangedFirstName");
+
+        // Then
+        assertThat(patientCache.getById(1L)).hasValueSatisfying(cached -> assertThat(cached.getFirstName()).isEqualTo("FirstName"));
+        assertThat(patientCache.getByLastName("LastName")).hasValueSatisfying(cached -> assertThat(cached.getId()).isEqualTo(1L));
+    }
+
+    @Test
+    void getByLastNameShouldMissWhenCachedPatientHasAnotherLastName() {
+        // Given
+        LocalDate dateOfBirth = LocalDate.of(2023, 4, 11);
+        patientCache.put(new Patient(1L, "LastName", "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262-9996"));
+
+        // When
+        patientCache.put(new Patient(1L, "NewLastName", "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262-9996"));
+
+        // Then
+        assertThat(patientCache.getByLastName("LastName")).isEmpty();
+        assertThat(patientCache.getByLastName("NewLastName")).isPresent();
+    }
+
+    @Test
+    void getByIdShouldReturnACopy() {
+        // Given
+        patientCache.put(patient(1L, "LastName", 0L));
+
+        // When
+        patientCache.getById(1L).ifPresent(cached -> cached.setFirstName("ChangedFirstName"));
+
+        // Then
+        assertThat(patientCache.getById(1L)).hasValueSatisfying(cached -> assertThat(cached.getFirstName()).isEqualTo("FirstName"));
+        assertThat(patientCache.getByLastName("LastName")).hasValueSatisfying(cached -> assertThat(cached.getFirstName()).isEqualTo("FirstName"));
+    }
+
+    @Test
+    void putShouldKeepTheNewerVersion() {
+        // Given
+        patientCache.put(patient(1L, "NewLastName", 2L));
+
+        // When
+        patientCache.put(patient(1L, "LastName", 1L));
+
+        // Then
+        assertThat(patientCache.getById(1L)).hasValueSatisfying(cached -> assertThat(cached.getVersion()).isEqualTo(2L));
+        assertThat(patientCache.getByLastName("LastName")).isEmpty();
+    }
+
+    @Test
+    void putShouldRefuseAVersionOlderThanTheEvictedChange() {
+        // Given
+        patientCache.evict(1L, 2L, "LastName");
+
+        // When
+        patientCache.put(patient(1L, "LastName", 1L));
+
+        // Then
+        assertThat(patientCache.getById(1L)).isEmpty();
+        patientCache.put(patient(1L, "LastName", 2L));
+        assertThat(patientCache.getById(1L)).isPresent();
+    }
+
+    @Test
+    void putRacingAnEvictionShouldNeverKeepTheStaleVersion() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (long id = 1; id <= 100; id++) {
+                // Given
+                Patient stale = patient(id, "LastName" + id, 1L);
+                CyclicBarrier barrier = new CyclicBarrier(2);
+
+                // When
+                long evictedId = id;
+                Future<?> put = executor.submit(() -> {
+                    barrier.await();
+                    patientCache.put(stale);
+                    return null;
+                });
+                Future<?> evict = executor.submit(() -> {
+                    barrier.await();
+                    patientCache.evict(evictedId, 2L, stale.getLastName());
+                    return null;
+                });
+                put.get();
+                evict.get();
+
+                // Then
+                assertThat(patientCache.getById(id)).isEmpty();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void evictShouldRemovePatientAndLastNames() {
+        // Given
+        patientCache.put(new Patient(1L, "LastName", "FirstName", LocalDate.of(2023, 4, 11), "F", "21 Rue de Paris", "121-262-9996"));
+
+        // When
+        patientCache.evict(1L, null, "LastName", null);
+
+        // Then
+        assertThat(patientCache.getById(1L)).isEmpty();
+        assertThat(patientCache.getByLastName("LastName")).isEmpty();
+    }
+
+    @Test
+    void getStatisticsShouldCountHitsAndMisses() {
+        // Given
+        patientCache.put(new Patient(1L, "LastName", "FirstName", LocalDate.of(2023, 4, 11), "F", "21 Rue de Paris", "121-262-9996"));
+
+        // When
+        patientCache.getById(1L);
+        patientCache.getById(2L);
+
+        // Then
+        List<CacheStatistics> statistics = patientCache.getStatistics();
+        CacheStatistics patientsById = statistics.get(0);
+        assertThat(patientsById.name()).isEqualTo("patientsById");
+        assertThat(patientsById.hitCount()).isEqualTo(1);
+        assertThat(patientsById.missCount()).isEqualTo(1);
+        assertThat(patientsById.size()).isEqualTo(1);
+    }
+
+    private static Patient patient(Long id, String lastName, Long version) {
+        Patient patient = new Patient(id, lastName, "FirstName", LocalDate.of(2023, 4, 11), "F", "21 Rue de Paris", "121-262-9996");
+        patient.setVersion(version);
+        return patient;
+    }
+}
@@ -0,0 +1,85 @@
+package com.mediscreen.patientmicroservice.service;
+
+import com.mediscreen.patientmicroservice.domain.Patient;
+import com.mediscreen.patientmicroservice.domain.PatientCount;
+import com.mediscreen.patientmicroservice.domain.PatientSummary;
+import com.mediscreen.patientmicroservice.repository.PatientRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PatientDemographicsTest {
+    @Mock
+    private PatientRepository patientRepository;
+    @InjectMocks
+    private PatientDemographics patientDemographics;
+
+    private final LocalDate today = LocalDate.now();
+
+    @BeforeEach
+    void init() {
+        when(patientRepository.countBySexAndDateOfBirth()).thenReturn(List.of(
+                new PatientCount("F", today.minusYears(10), 2L),
+                new PatientCount("M", today.minusYears(18), 1L),
+                new PatientCount("F", today.minusYears(70), 3L)));
+        patientDemographics.reload();
+    }
+
+    @Test
+    void getStatsShouldCountBySexAndAgeBand() {
+        PatientStats stats = patientDemographics.getStats();
+
+        assertThat(stats.total()).isEqualTo(6L);
+        assertThat(stats.bySex()).isEqualTo(Map.of("F", 5L, "M", 1L));
+        assertThat(stats.byAgeBand()).containsExactly(
+                Map.entry("0-17", 2L), Map.entry("18-39", 1L), Map.entry("40-64", 0L), Map.entry("65+", 3L));
+    }
+
+    @Test
+    void getStatsShouldNotQueryAgainWhileCountsAreCurrent() {
+        patientDemographics.getStats();
+        patientDemographics.getStats();
+
+        verify(patientRepository, times(1)).countBySexAndDateOfBirth();
+    }
+
+    @Test
+    void onPatientChangeShouldUpdateCountsWithoutQuery() {
+        PatientSummary previous = PatientSummary.of(patient("F", today.minusYears(70)));
+        Patient current = patient("M", today.minusYears(50));
+
+        patientDemographics.onPatientChange(PatientChangeEvent.created(patient("M", today.minusYears(30))));
+        patientDemographics.onPatientChange(PatientChangeEvent.updated(1L, previous, current));
+        patientDemographics.onPatientChange(PatientChangeEvent.deleted(2L, new PatientSummary(2L, "LastName", "FirstName", today.minusYears(10), "F")));
+        PatientStats stats = patientDemographics.getStats();
+
+        assertThat(stats.total()).isEqualTo(6L);
+        assertThat(stats.bySex()).isEqualTo(Map.of("F", 3L, "M", 3L));
+        assertThat(stats.byAgeBand()).containsExactly(
+                Map.entry("0-17", 1L), Map.entry("18-39", 2L), Map.entry("40-64", 1L), Map.entry("65+", 2L));
+        verify(patientRepository, times(1)).countBySexAndDateOfBirth();
+    }
+
+    @Test
+    void onPatientChangeWithUnknownPreviousStateShouldReloadOnNextRead() {
+        patientDemographics.onPatientChange(PatientChangeEvent.deleted(1L, null));
+        patientDemographics.getStats();
+
+        verify(patientRepository, times(2)).countBySexAndDateOfBirth();
+    }
+
+    private Patient patient(String sex, LocalDate dateOfBirth) {
+        return new Patient(1L, "LastName", "FirstName", dateOfBirth, sex, "21 Rue de Paris", "121-262-9996");
+    }
+}
@@ -1,22 +1,51 @@
 package com.mediscreen.patientmicroservice.service;
 
 import com.mediscreen.patientmicroservice.domain.Patient;
+import com.mediscreen.patientmicroservice.domain.PatientSummary;
+import com.mediscreen.patientmicroservice.domain.PatientTombstone;
 import com.mediscreen.patientmicroservice.exceptions.PatientAlreadyExistException;
 import com.mediscreen.patientmicroservice.exceptions.PatientNotFoundException;
+import com.mediscreen.patientmicroservice.exceptions.PatientValidationException;
+import com.mediscreen.patientmicroservice.exceptions.PatientVersionMismatchException;
 import com.mediscreen.patientmicroservice.repository.PatientRepository;
+import com.mediscreen.patientmicroservice.repository.PatientTombstoneRepository;
+import com.mediscreen.patientmicroservice.search.PatientDuplicateIndex;
+import com.mediscreen.patientmicroservice.search.PatientSearchIndex;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import javax.validation.Validation;
+import javax.validation.Validator;
 import java.security.InvalidParameterException;
+import java.sql.SQLException;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
@@ -27,6 +56,24 @@ import static org.mockito.Mockito.*;
 class PatientServiceImplTest {
     @Mock
     private PatientRepository patientRepository;
+    @Mock
+    private EntityManager entityManager;
+    @Mock
+    private PatientCache patientCache;
+    @Mock
+    private Validator validator;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private PatientSearchIndex patientSearchIndex;
+    @Mock
+    private PatientChangeVersion patientChangeVersion;
+    @Mock
+    private PatientTombstoneRepository patientTombstoneRepository;
+    @Mock
+    private PatientDemographics patientDemographics;
+    @Mock
+    private PatientDuplicateIndex patientDuplicateIndex;
     @InjectMocks
     private PatientServiceImpl patientService;
     private List<Patient> patients;
@@ -80,6 +127,186 @@ class PatientServiceImplTest {
 
     }
 
+    @Test
+    void testGetPatientsAfterShouldUseKeysetQuery() {
+        // Given
+        LocalDate dateOfBirth = LocalDate.of(2022, 8, 31);
+        Patient patient = new Patient(6L, "LastName6", "FirstName6", dateOfBirth, "F", "21 Rue de Paris", "121-262-9996");
+        patients.add(patient);
+
+        when(patientRepository.findByIdGreaterThanOrderByIdAsc(5L, PageRequest.of(0, 10))).thenReturn(patients);
+
+        // When
+        List<Patient> page = patientService.getPatientsAfter(5L, 10);
+
+        // Then
+        assertThat(page.size()).isEqualTo(1);
+        assertThat(page.get(0).getId()).isEqualTo(6L);
+        verify(patientRepository, never()).findAll();
+    }
+
+    @Test
+    void testGetPatientSummariesAfterShouldUseKeysetProjectionQuery() {
+        // Given
+        PatientSummary patientSummary = new PatientSummary(6L, "LastName6", "FirstName6", LocalDate.of(2022, 8, 31), "F");
+        when(patientRepository.findSummariesByIdGreaterThan(5L, PageRequest.of(0, 10))).thenReturn(List.of(patientSummary));
+
+        // When
+        List<PatientSummary> page = patientService.getPatientSummariesAfter(5L, 10);
+
+        // Then
+        assertThat(page.size()).isEqualTo(1);
+        verify(patientRepository, never()).findByIdGreaterThanOrderByIdAsc(anyLong(), any());
+    }
+
+    @Test
+    void testGetPatientSummaryByIdShouldUseCachedPatient() {
+        // Given
+        Patient patient = new Patient(1L, "LastName", "FirstName", LocalDate.of(2023, 4, 11), "F", "21 Rue de Paris", "121-262-9996");
+        when(patientCache.getById(1L)).thenReturn(Optional.of(patient));
+
+        // When
+        PatientSummary patientSummary = patientService.getPatientSummaryById(1L);
+
+        // Then
+        assertThat(patientSummary).isEqualTo(new PatientSummary(1L, "LastName", "FirstName", LocalDate.of(2023, 4, 11), "F"));
+        verify(patientRepository, never()).findSummaryById(anyLong());
+    }
+
+    @Test
+    void testGetPatientSummaryByLastNameWithNonExistingPatientShouldThrowPatientNotFoundException() {
+        // Given
+        when(patientCache.getByLastName("LastName")).thenReturn(Optional.empty());
+        when(patientRepository.findSummaryByLastName("LastName")).thenReturn(Optional.empty());
+
+        // Then
+        assertThatThrownBy(() -> patientService.getPatientSummaryByLastName("LastName")).isInstanceOf(PatientNotFoundException.class);
+        verify(patientRepository, never()).findByLastName(anyString());
+    }
+
+    @Test
+    void testGetPatientsByIdsShouldQueryOnlyUncachedIdsAndReturnMissingIds() {
+        // Given
+        LocalDate dateOfBirth = LocalDate.of(2022, 8, 31);
+        Patient patient1 = new Patient(1L, "LastName1", "FirstName1", dateOfBirth, "F", "21 Rue de Paris", "121-262-9996");
+        Patient patient3 = new Patient(3L, "LastName3", "FirstName3", dateOfBirth, "M", "36 Rue Jean Jaurès", "756-311-4416");
+        when(patientCache.getById(anyLong())).thenReturn(Optional.empty());
+        when(patientCache.getById(1L)).thenReturn(Optional.of(patient1));
+        when(patientRepository.findByIdIn(List.of(3L, 2L))).thenReturn(List.of(patient3));
+
+        // When
+        PatientLookup patientLookup = patientService.getPatientsByIds(List.of(3L, 1L, 2L, 3L));
+
+        // Then
+        assertThat(patientLookup.patients()).isEqualTo(List.of(patient3, patient1));
+        assertThat(patientLookup.missingIds()).isEqualTo(List.of(2L));
+        verify(patientRepository, times(1)).findByIdIn(anyCollection());
+        verify(patientCache, never()).put(any(Patient.class));
+    }
+
+    @Test
+    void testGetPatientsByIdsShouldChunkLargeIdLists() {
+        // Given
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= 2500; id++) {
+            ids.add(id);
+        }
+        when(patientCache.getById(anyLong())).thenReturn(Optional.empty());
+        when(patientRepository.findByIdIn(anyCollection())).thenReturn(List.of());
+
+        // When
+        PatientLookup patientLookup = patientService.getPatientsByIds(ids);
+
+        // Then
+        assertThat(patientLookup.missingIds().size()).isEqualTo(2500);
+        verify(patientRepository, times(3)).findByIdIn(anyCollection());
+    }
+
+    @Test
+    void testGetPatientChangesShouldMergeChangedAndDeletedPatientsInOrder() {
+        // Given
+        Instant since = Instant.parse("2023-04-12T10:00:00Z");
+        Patient patient1 = new Patient(1L, "LastName1", "FirstName1", LocalDate.of(2022, 8, 31), "F", "21 Rue de Paris", "121-262-9996");
+        patient1.setUpdatedAt(since.plusSeconds(1));
+        Patient patient3 = new Patient(3L, "LastName3", "FirstName3", LocalDate.of(2022, 8, 31), "M", "21 Rue de Paris", "121-262-9996");
+        patient3.setUpdatedAt(since.plusSeconds(3));
+        PatientTombstone tombstone2 = new PatientTombstone(2L, since.plusSeconds(2));
+        when(patientRepository.findChangedAfter(since, 0L, PageRequest.of(0, 3))).thenReturn(List.of(patient1, patient3));
+        when(patientTombstoneRepository.findDeletedAfter(since, 0L, PageRequest.of(0, 3))).thenReturn(List.of(tombstone2));
+
+        // When
+        PatientChanges patientChanges = patientService.getPatientChanges(since, 0L, 2);
+
+        // Then
+        assertThat(patientChanges.changed()).isEqualTo(List.of(patient1));
+        assertThat(patientChanges.deleted()).isEqualTo(List.of(tombstone2));
+        assertThat(patientChanges.since()).isEqualTo(since.plusSeconds(2));
+        assertThat(patientChanges.afterId()).isEqualTo(2L);
+        assertThat(patientChanges.hasMore()).isTrue();
+    }
+
+    @Test
+    void testGetPatientChangesWithoutChangeShouldKeepCursor() {
+        // Given
+        Instant since = Instant.parse("2023-04-12T10:00:00Z");
+        when(patientRepository.findChangedAfter(since, 5L, PageRequest.of(0, 51))).thenReturn(List.of());
+        when(patientTombstoneRepository.findDeletedAfter(since, 5L, PageRequest.of(0, 51))).thenReturn(List.of());
+
+        // When
+        PatientChanges patientChanges = patientService.getPatientChanges(since, 5L, 50);
+
+        // Then
+        assertThat(patientChanges.since()).isEqualTo(since);
+        assertThat(patientChanges.afterId()).isEqualTo(5L);
+        assertThat(patientChanges.hasMore()).isFalse();
+    }
+
+    @Test
+    void testGetPatientsVersionShouldBeReadFromDatabase() {
+        // Given
+        when(patientRepository.findLastUpdatedAt()).thenReturn(Optional.of(Instant.parse("2023-04-12T10:00:00.000001Z")));
+        when(patientTombstoneRepository.findLastDeletedAt()).thenReturn(Optional.empty());
+
+        // When
+        String version = patientService.getPatientsVersion();
+
+        // Then
+        assertThat(version).isEqualTo("1681293600000001-0");
+        verify(patientRepository, never()).count();
+        verifyNoInteractions(patientChangeVersion);
+    }
+
+    @Test
+    void testGetPatientsVersionShouldChangeAfterDelete() {
+        // Given
+        when(patientRepository.findLastUpdatedAt()).thenReturn(Optional.of(Instant.parse("2023-04-12T10:00:00Z")));
+        when(patientTombstoneRepository.findLastDeletedAt())
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(Instant.parse("2023-04-12T10:00:01Z")));
+
+        // Then
+        assertThat(patientService.getPatientsVersion()).isNotEqualTo(patientService.getPatientsVersion());
+    }
+
+    @Test
+    void testExportPatientsShouldDetachEachPatientOnceConsumed() {
+        // Given
+        LocalDate dateOfBirth = LocalDate.of(2022, 8, 31);
+        Patient patient1 = new Patient(1L, "LastName1", "FirstName1", dateOfBirth, "F", "21 Rue de Paris", "121-262-9996");
+        Patient patient2 = new Patient(2L, "LastName2", "FirstName2", dateOfBirth, "M", "36 Rue Jean Jaurès", "756-311-4416");
+
+        when(patientRepository.streamAll()).thenReturn(Stream.of(patient1, patient2));
+
+        // When
+        patientService.exportPatients(patients::add);
+
+        // Then
+        assertThat(patients.size()).isEqualTo(2);
+        verify(entityManager).detach(patient1);
+        verify(entityManager).detach(patient2);
+        verify(patientRepository, never()).findAll();
+    }
+
     @Test
     void testGetPatientByIdShouldReturnPatient() {
         // Given
@@ -96,6 +323,151 @@ class PatientServiceImplTest {
         verify(patientRepository).findById(anyLong());
     }
 
+    @Test
+    void testGetPatientByIdShouldReturnCachedPatientWithoutQuery() {
+        // Given
+        LocalDate dateOfBirth = LocalDate.of(2023, 4, 11);
+        Patient patient = new Patient(1L, "LastName", "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262-9996");
+
+        when(patientCache.getById(1L)).thenReturn(Optional.of(patient));
+
+        // When
+        Patient patientById = patientService.getPatientById(1L);
+
+        // Then
+        assertThat(patientById).isEqualTo(patient);
+        verify(patientRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void testGetPatientByIdShouldCachePatientLoadedFromDB() {
+        // Given
+        LocalDate dateOfBirth = LocalDate.of(2023, 4, 11);
+        Patient patient = new Patient(1L, "LastName", "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262-9996");
+
+        when(patientRepository.findById(1L)).thenReturn(Optional.of(patient));
+
+        // When
+        patientService.getPatientById(1L);
+
+        // Then
+        verify(patientCache).put(patient);
+    }
+
+    @Test
+    void testGetPatientByIdConcurrentlyShouldShareOneQueryButNotItsResult() throws Exception {
+        // Given
+        int threads = 16;
+        Patient patient = new Patient(1L, "LastName", "FirstName", LocalDate.of(2023, 4, 11), "F", "21 Rue de Paris", "121-262-9996");
+        CountDownLatch cacheMisses = new CountDownLatch(threads);
+        when(patientCache.getById(1L)).thenAnswer(invocation -> {
+            cacheMisses.countDown();
+            return Optional.empty();
+        });
+        when(patientRepository.findById(1L)).thenAnswer(invocation -> {
+            // the query lasts until every caller has missed the cache and joined it
+            cacheMisses.await(10, TimeUnit.SECONDS);
+            Thread.sleep(100);
+            return Optional.of(patient);
+        });
+
+        // When
+        List<Patient> patientsById = getConcurrently(threads, () -> patientService.getPatientById(1L));
+
+        // Then
+        assertThat(patientsById.size()).isEqualTo(threads);
+        assertThat(patientsById.stream().allMatch(patient::equals)).isTrue();
+        // each caller can change its patient without affecting the others
+        Set<Patient> instances = Collections.newSetFromMap(new IdentityHashMap<>());
+        instances.addAll(patientsById);
+        assertThat(instances.size()).isEqualTo(threads);
+        verify(patientRepository, times(1)).findById(1L);
+        verify(patientCache, times(1)).put(patient);
+    }
+
+    @Test
+    void testGetPatientByLastNameConcurrentlyShouldShareOneQueryAndItsException() throws Exception {
+        // Given
+        int threads = 16;
+        CountDownLatch cacheMisses = new CountDownLatch(threads);
+        when(patientCache.getByLastName("LastName")).thenAnswer(invocation -> {
+            cacheMisses.countDown();
+            return Optional.empty();
+        });
+        when(patientRepository.findByLastName("LastName")).thenAnswer(invocation -> {
+            cacheMisses.await(10, TimeUnit.SECONDS);
+            Thread.sleep(100);
+            return Optional.empty();
+        });
+
+        // When
+        List<Patient> patientsByLastName = getConcurrently(threads, () -> {
+            try {
+                return patientService.getPatientByLastName("LastName");
+            } catch (PatientNotFoundException e) {
+                return null;
+            }
+        });
+
+        // Then
+        assertThat(patientsByLastName.stream().allMatch(Objects::isNull)).isTrue();
+        verify(patientRepository, times(1)).findByLastName("LastName");
+    }
+
+    @Test
+    void testGetPatientByIdSuccessivelyShouldQueryEachTime() {
+        // Given
+        Patient patient = new Patient(1L, "LastName", "FirstName", LocalDate.of(2023, 4, 11), "F", "21 Rue de Paris", "121-262-9996");
+        when(patientRepository.findById(1L)).thenReturn(Optional.of(patient));
+
+        // When
+        patientService.getPatientById(1L);
+        patientService.getPatientById(1L);
+
+        // Then
+        verify(patientRepository, times(2)).findById(1L);
+    }
+
+    @Test
+    void testGetPatientVersionShouldReturnCachedVersionWithoutQuery() {
+        // Given
+        Patient patient = new Patient(1L, "LastName", "FirstName", LocalDate.of(2023, 4, 11), "F", "21 Rue de Paris", "121-262-9996");
+        patient.setVersion(3L);
+
+        when(patientCache.getById(1L)).thenReturn(Optional.of(patient));
+
+        // When
+        Long version = patientService.getPatientVersion(1L);
+
+        // Then
+        assertThat(version).isEqualTo(3L);
+        verify(patientRepository, never()).findVersionById(anyLong());
+    }
+
+    @Test
+    void testGetPatientVersionShouldOnlyQueryVersion() {
+        // Given
+        when(patientCache.getById(1L)).thenReturn(Optional.empty());
+        when(patientRepository.findVersionById(1L)).thenReturn(Optional.of(2L));
+
+        // When
+        Long version = patientService.getPatientVersion(1L);
+
+        // Then
+        assertThat(version).isEqualTo(2L);
+        verify(patientRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void testGetPatientVersionWithNonExistingPatientShouldThrowPatientNotFoundException() {
+        // Given
+        when(patientCache.getById(1L)).thenReturn(Optional.empty());
+        when(patientRepository.findVersionById(1L)).thenReturn(Optional.empty());
+
+        // Then
+        assertThatThrownBy(() -> patientService.getPatientVersion(1L)).isInstanceOf(PatientNotFoundException.class);
+    }
+
     @Test
     void testGetPatientByIdShouldThrowsException() {
         // Given
@@ -141,20 +513,35 @@ class PatientServiceImplTest {
         LocalDate dateOfBirth = LocalDate.of(2023, 4, 11);
         Patient patient = new Patient(1L, "LastName", "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262-9996");
 
-        when(patientRepository.save(any())).thenReturn(patient);
+        when(patientRepository.saveAndFlush(any())).thenReturn(patient);
 
         // When
         Patient patientSaved = patientService.addPatient(patient);
 
         // Then
         assertThat(patientSaved.getPhoneNumber()).isEqualTo(patient.getPhoneNumber());
-        verify(patientRepository).save(any());
+        verify(patientRepository).saveAndFlush(any());
+    }
+
+    @Test
+    void testAddPatientShouldPublishCreatedEvent() {
+        // Given
+        LocalDate dateOfBirth = LocalDate.of(2023, 4, 11);
+        Patient patient = new Patient(1L, "LastName", "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262-9996");
+
+        when(patientRepository.saveAndFlush(any())).thenReturn(patient);
+
+        // When
+        patientService.addPatient(patient);
+
+        // Then
+        verify(eventPublisher).publishEvent(PatientChangeEvent.created(patient));
     }
 
     @Test
     void testAddPatientWithNullPatientObject() {
         // Given
-        when(patientRepository.save(new Patient())).thenThrow(new InvalidParameterException("Patient should not be null"));
+        when(patientRepository.saveAndFlush(new Patient())).thenThrow(new InvalidParameterException("Patient should not be null"));
         // Then
        assertThatThrownBy(() -> patientService.addPatient(new Patient()));
     }
@@ -165,11 +552,12 @@ class PatientServiceImplTest {
         LocalDate dateOfBirth = LocalDate.of(2023, 4, 11);
         Patient patient = new Patient(1L, "ExistingLastName", "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262-9996");
 
-        when(patientRepository.save(patient)).thenThrow(new PatientAlreadyExistException("Patient with lastName:{ExistingLastName} already exits in DB"));
+        when(patientRepository.saveAndFlush(patient)).thenThrow(lastNameViolation());
 
         // Then
-        assertThatThrownBy(() -> patientService.addPatient(patient));
-
+        assertThatThrownBy(() -> patientService.addPatient(patient)).isInstanceOf(PatientAlreadyExistException.class);
+        verify(patientRepository, never()).findByLastName(anyString());
+        verify(eventPublisher, never()).publishEvent(any(PatientChangeEvent.class));
     }
     @Test
     void testAddPatientWithEmptyLastNameShouldThrowInvalidParameterException() {
@@ -177,7 +565,7 @@ class PatientServiceImplTest {
         LocalDate dateOfBirth = LocalDate.of(2023, 4, 11);
         Patient patient = new Patient(1L, "", "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262-9996");
 
-        when(patientRepository.save(patient)).thenThrow(new InvalidParameterException("Last name should not be empty or null"));
+        when(patientRepository.saveAndFlush(patient)).thenThrow(new InvalidParameterException("Last name should not be empty or null"));
 
         // Then
         assertThatThrownBy(() -> patientService.addPatient(patient));
@@ -190,7 +578,7 @@ class PatientServiceImplTest {
         LocalDate dateOfBirth = LocalDate.of(2023, 4, 11);
         Patient patient = new Patient("LastName", "FirstName", dateOfBirth, "F", "21 Rue de Paris", "");
 
-        when(patientRepository.save(patient)).thenThrow(new InvalidParameterException("Phone number is mandatory"));
+        when(patientRepository.saveAndFlush(patient)).thenThrow(new InvalidParameterException("Phone number is mandatory"));
 
         // Then
         assertThatThrownBy(() -> patientService.addPatient(patient));
@@ -203,12 +591,96 @@ class PatientServiceImplTest {
         LocalDate dateOfBirth = LocalDate.of(2023, 4, 11);
         Patient patient = new Patient(1L, "LastName", "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262");
 
-        when(patientRepository.save(patient)).thenThrow(new InvalidParameterException("Phone number should be with format: xxx-xxx-xxxx"));
+        when(patientRepository.saveAndFlush(patient)).thenThrow(new InvalidParameterException("Phone number should be with format: xxx-xxx-xxxx"));
 
         // Then
         assertThatThrownBy(() -> patientService.addPatient(patient));
     }
 
+    @Test
+    void testAddPatientsShouldSaveInBatchesAndFlush() {
+        // Given
+        LocalDate dateOfBirth = LocalDate.of(2023, 4, 11);
+        for (int i = 0; i < 120; i++) {
+            patients.add(new Patient("LastName" + i, "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262-9996"));
+        }
+        when(validator.validate(any(Patient.class))).thenReturn(Set.of());
+        when(patientRepository.findExistingLastNames(anyCollection())).thenReturn(List.of());
+        when(patientRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        List<Patient> patientsSaved = patientService.addPatients(patients);
+
+        // Then
+        assertThat(patientsSaved.size()).isEqualTo(120);
+        verify(patientRepository, times(1)).findExistingLastNames(anyCollection());
+        verify(patientRepository, times(3)).saveAll(anyList());
+        verify(entityManager, times(3)).flush();
+        verify(patientRepository, never()).findByLastName(anyString());
+    }
+
+    @Test
+    void testAddPatientsWithLastNameInsertedConcurrentlyShouldThrowPatientAlreadyExistException() {
+        // Given
+        patients.add(new Patient("LastName", "FirstName", LocalDate.of(2023, 4, 11), "F", "21 Rue de Paris", "121-262-9996"));
+        when(validator.validate(any(Patient.class))).thenReturn(Set.of());
+        when(patientRepository.findExistingLastNames(anyCollection())).thenReturn(List.of());
+        when(patientRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        doThrow(new PersistenceException(lastNameViolation().getCause())).when(entityManager).flush();
+
+        // Then
+        assertThatThrownBy(() -> patientService.addPatients(patients)).isInstanceOf(PatientAlreadyExistException.class);
+        verify(eventPublisher, never()).publishEvent(any(PatientChangeEvent.class));
+    }
+
+    @Test
+    void testAddPatientsWithInvalidPatientShouldThrowPatientValidationException() {
+        // Given
+        Validator realValidator = Validation.buildDefaultValidatorFactory().getValidator();
+        LocalDate dateOfBirth = LocalDate.of(2023, 4, 11);
+        patients.add(new Patient("LastName", "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262-9996"));
+        patients.add(new Patient("LastName2", "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262"));
+        when(validator.validate(any(Patient.class))).thenAnswer(invocation -> realValidator.validate(invocation.getArgument(0)));
+
+        // Then
+        assertThatThrownBy(() -> patientService.addPatients(patients))
+                .isInstanceOf(PatientValidationException.class)
+                .satisfies(e -> assertThat(((PatientValidationException) e).getErrors())
+                        .isEqualTo(List.of("Patient #1 phoneNumber: Phone number must be in xxx-xxx-xxxx format")));
+        verify(patientRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void testAddPatientsWithExistingLastNameShouldThrowPatientAlreadyExistException() {
+        // Given
+        LocalDate dateOfBirth = LocalDate.of(2023, 4, 11);
+        patients.add(new Patient("LastName", "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262-9996"));
+        patients.add(new Patient("ExistingLastName", "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262-9996"));
+        when(validator.validate(any(Patient.class))).thenReturn(Set.of());
+        when(patientRepository.findExistingLastNames(anyCollection())).thenReturn(List.of("ExistingLastName"));
+
+        // Then
+        assertThatThrownBy(() -> patientService.addPatients(patients))
+                .isInstanceOf(PatientAlreadyExistException.class)
+                .hasMessage("Patients with lastName:{ExistingLastName} already exist in DB");
+        verify(patientRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void testAddPatientsWithLastNameDuplicatedInBatchShouldThrowPatientAlreadyExistException() {
+        // Given
+        LocalDate dateOfBirth = LocalDate.of(2023, 4, 11);
+        patients.add(new Patient("LastName", "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262-9996"));
+        patients.add(new Patient("LastName", "OtherFirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262-9996"));
+        when(validator.validate(any(Patient.class))).thenReturn(Set.of());
+
+        // Then
+        assertThatThrownBy(() -> patientService.addPatients(patients))
+                .isInstanceOf(PatientAlreadyExistException.class)
+                .hasMessage("Patients with lastName:{LastName} already exist in DB");
+        verify(patientRepository, never()).saveAll(anyList());
+    }
+
     @Test
     void testUpdatePatientByIdWithSuccess() {
         // Given
@@ -226,6 +698,162 @@ class PatientServiceImplTest {
         verify(patientRepository).findById(anyLong());
     }
 
+    @Test
+    void testUpdatePatientByIdWithVersionShouldUpdateInOneStatement() {
+        // Given
+        Patient patient = new Patient("LastName", "FirstName", LocalDate.of(2023, 4, 11), "F", "21 Rue de Paris", "333-444-5555");
+
+        when(patientCache.getById(1L)).thenReturn(Optional.empty());
+        when(patientRepository.updateByIdAndVersion(eq(1L), eq(3L), any(Patient.class))).thenReturn(1);
+
+        // When
+        Patient patientUpdated = patientService.updatePatientById(1L, 3L, patient);
+
+        // Then
+        assertThat(patientUpdated.getId()).isEqualTo(1L);
+        assertThat(patientUpdated.getVersion()).isEqualTo(4L);
+        assertThat(patientUpdated.getPhoneNumber()).isEqualTo("333-444-5555");
+        assertThat(patientUpdated.getUpdatedAt()).isNotNull();
+        assertThat(patientUpdated.getCreatedAt()).isNull();
+        assertThat(patient.getUpdatedAt()).isNull();
+        assertThat(patient.getId()).isNull();
+        verify(patientRepository, never()).findById(anyLong());
+        verify(patientRepository, never()).findByLastName(anyString());
+        verify(patientRepository, never()).findSummaryById(anyLong());
+        verify(patientCache).evict(1L, 4L, "LastName");
+        verify(eventPublisher).publishEvent(PatientChangeEvent.updated(1L, null, patientUpdated));
+    }
+
+    @Test
+    void testUpdatePatientByIdWithStaleVersionShouldThrowPatientVersionMismatchException() {
+        // Given
+        Patient patient = new Patient("LastName", "FirstName", LocalDate.of(2023, 4, 11), "F", "21 Rue de Paris", "333-444-5555");
+
+        when(patientCache.getById(1L)).thenReturn(Optional.empty());
+        when(patientRepository.updateByIdAndVersion(eq(1L), eq(3L), any(Patient.class))).thenReturn(0);
+        when(patientRepository.existsById(1L)).thenReturn(true);
+
+        // Then
+        assertThatThrownBy(() -> patientService.updatePatientById(1L, 3L, patient)).isInstanceOf(PatientVersionMismatchException.class);
+        verify(eventPublisher, never()).publishEvent(any(PatientChangeEvent.class));
+    }
+
+    @Test
+    void testUpdatePatientByIdWithVersionAndNonExistingPatientShouldThrowPatientNotFoundException() {
+        // Given
+        Patient patient = new Patient("LastName", "FirstName", LocalDate.of(2023, 4, 11), "F", "21 Rue de Paris", "333-444-5555");
+
+        when(patientCache.getById(1L)).thenReturn(Optional.empty());
+        when(patientRepository.updateByIdAndVersion(eq(1L), eq(3L), any(Patient.class))).thenReturn(0);
+        when(patientRepository.existsById(1L)).thenReturn(false);
+
+        // Then
+        assertThatThrownBy(() -> patientService.updatePatientById(1L, 3L, patient)).isInstanceOf(PatientNotFoundException.class);
+    }
+
+    @Test
+    void testUpdatePatientByIdWithVersionAndCachedPatientShouldNotReadIt() {
+        // Given
+        Patient cachedPatient = new Patient(1L, "OldLastName", "FirstName", LocalDate.of(2023, 4, 11), "M", "21 Rue de Paris", "333-444-5555");
+        cachedPatient.setVersion(3L);
+        cachedPatient.setCreatedAt(Patient.now());
+        Patient patient = new Patient("LastName", "FirstName", LocalDate.of(2023, 4, 11), "F", "21 Rue de Paris", "333-444-5555");
+
+        when(patientCache.getById(1L)).thenReturn(Optional.of(cachedPatient));
+        when(patientRepository.updateByIdAndVersion(eq(1L), eq(3L), any(Patient.class))).thenReturn(1);
+
+        // When
+        Patient patientUpdated = patientService.updatePatientById(1L, 3L, patient);
+
+        // Then
+        assertThat(patientUpdated.getCreatedAt()).isEqualTo(cachedPatient.getCreatedAt());
+        verify(patientRepository, never()).findSummaryById(anyLong());
+        verify(patientCache).evict(1L, 4L, "OldLastName", "LastName");
+        verify(eventPublisher).publishEvent(PatientChangeEvent.updated(1L, PatientSummary.of(cachedPatient), patientUpdated));
+    }
+
+    @Test
+    void testUpdatePatientByIdWithVersionAndDuplicateLastNameShouldThrowPatientAlreadyExistException() {
+        // Given
+        Patient patient = new Patient("LastName", "FirstName", LocalDate.of(2023, 4, 11), "F", "21 Rue de Paris", "333-444-5555");
+
+        when(patientCache.getById(1L)).thenReturn(Optional.empty());
+        when(patientRepository.updateByIdAndVersion(eq(1L), eq(3L), any(Patient.class))).thenThrow(lastNameViolation());
+
+        // Then
+        assertThatThrownBy(() -> patientService.updatePatientById(1L, 3L, patient)).isInstanceOf(PatientAlreadyExistException.class);
+        verify(eventPublisher, never()).publishEvent(any(PatientChangeEvent.class));
+    }
+
+    @Test
+    void testUpdatePatientByIdWithVersionAndOtherIntegrityViolationShouldRethrowIt() {
+        // Given
+        Patient patient = new Patient("LastName", "FirstName", LocalDate.of(2023, 4, 11), "F", "21 Rue de Paris", "333-444-5555");
+        DataIntegrityViolationException notNullViolation = new DataIntegrityViolationException("could not execute statement",
+                new ConstraintViolationException("NULL not allowed for column \"SEX\"", new SQLException(), null));
+
+        when(patientCache.getById(1L)).thenReturn(Optional.empty());
+        when(patientRepository.updateByIdAndVersion(eq(1L), eq(3L), any(Patient.class))).thenThrow(notNullViolation);
+
+        // Then
+        assertThatThrownBy(() -> patientService.updatePatientById(1L, 3L, patient)).isSameAs(notNullViolation);
+    }
+
+    @Test
+    void testUpdatePatientByIdShouldEvictPreviousAndNewLastName() {
+        // Given
+        LocalDate dateOfBirth = LocalDate.of(2023, 4, 11);
+        Patient existingPatient = new Patient(1L, "LastName", "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262-9996");
+        Patient updatedPatient = new Patient("NewLastName", "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262-9996");
+
+        when(patientRepository.findById(1L)).thenReturn(Optional.of(existingPatient));
+
+        // When
+        patientService.updatePatientById(1L, updatedPatient);
+
+        // Then
+        verify(patientCache).evict(1L, null, "LastName", "NewLastName");
+    }
+
+    @Test
+    void testUpdatePatientByIdWithoutChangeShouldFenceTheCacheAtTheFlushedVersion() {
+        // Given
+        LocalDate dateOfBirth = LocalDate.of(2023, 4, 11);
+        Patient existingPatient = new Patient(1L, "LastName", "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262-9996");
+        existingPatient.setVersion(3L);
+        Patient updatedPatient = new Patient("LastName", "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262-9996");
+
+        when(patientRepository.findById(1L)).thenReturn(Optional.of(existingPatient));
+        when(patientRepository.save(existingPatient)).thenReturn(existingPatient);
+
+        // When
+        patientService.updatePatientById(1L, updatedPatient);
+
+        // Then
+        InOrder inOrder = inOrder(patientRepository, patientCache);
+        inOrder.verify(patientRepository).flush();
+        inOrder.verify(patientCache).evict(1L, 3L, "LastName", "LastName");
+    }
+
+    @Test
+    void testUpdatePatientByIdShouldPublishPreviousAndCurrentState() {
+        // Given
+        LocalDate dateOfBirth = LocalDate.of(2023, 4, 11);
+        Patient existingPatient = new Patient(1L, "LastName", "FirstName", dateOfBirth, "F", "21 Rue de Paris", "121-262-9996");
+        Patient updatedPatient = new Patient("LastName", "FirstName", dateOfBirth, "M", "21 Rue de Paris", "121-262-9996");
+        Patient previousPatient = new Patient(existingPatient);
+
+        when(patientRepository.findById(1L)).thenReturn(Optional.of(existingPatient));
+        when(patientRepository.save(existingPatient)).thenReturn(existingPatient);
+
+        // When
+        patientService.updatePatientById(1L, updatedPatient);
+
+        // Then
+        verify(eventPublisher).publishEvent(PatientChangeEvent.updated(1L, PatientSummary.of(previousPatient), existingPatient));
+        assertThat(existingPatient.getSex()).isEqualTo("M");
+    }
+
     @Test
     void testUpdateByIdWithLastNameAlreadyExisting() {
         // Given
@@ -307,24 +935,82 @@ class PatientServiceImplTest {
     void deletePatientByIdWithSuccess() {
         // Given
         LocalDate dateOfBirth = LocalDate.of(2023, 4, 15);
-        Patient patient = new Patient(1L,"LastNameUpdated", "FirstNameUpdated", dateOfBirth, "M", "25 Rue de Paris", "121-262-9996");
-        when(patientRepository.findById(anyLong())).thenReturn(Optional.of(patient));
-        doNothing().when(patientRepository).deleteById(1L);
+        PatientSummary patient = new PatientSummary(1L, "LastNameUpdated", "FirstNameUpdated", dateOfBirth, "M");
+        when(patientCache.getById(1L)).thenReturn(Optional.empty());
+        when(patientRepository.findSummaryById(1L)).thenReturn(Optional.of(patient));
+        when(patientRepository.deletePatientById(1L)).thenReturn(1);
+
+        // When
+        PatientSummary patientDeleted = patientService.deletePatientById(1L);
+
+        // Then
+        assertThat(patientDeleted).isEqualTo(patient);
+        verify(patientRepository, never()).findById(anyLong());
+        verify(patientRepository, never()).deleteById(anyLong());
+        verify(patientCache).evict(1L, Long.MAX_VALUE, "LastNameUpdated");
+        verify(entityManager).persist(any(PatientTombstone.class));
+        verify(eventPublisher).publishEvent(PatientChangeEvent.deleted(1L, patient));
+    }
+
+    @Test
+    void deletePatientByIdWithCachedPatientShouldOnlyDelete() {
+        // Given
+        Patient patient = new Patient(1L, "LastName", "FirstName", LocalDate.of(2023, 4, 15), "M", "25 Rue de Paris", "121-262-9996");
+        when(patientCache.getById(1L)).thenReturn(Optional.of(patient));
+        when(patientRepository.deletePatientById(1L)).thenReturn(1);
 
         // When
-        Patient patientDeleted = patientService.deletePatientById(1L);
+        PatientSummary patientDeleted = patientService.deletePatientById(1L);
 
         // Then
-        assertThat(patientDeleted.getPhoneNumber()).isEqualTo(patient.getPhoneNumber());
+        assertThat(patientDeleted).isEqualTo(PatientSummary.of(patient));
+        verify(patientRepository, never()).findSummaryById(anyLong());
+        verify(eventPublisher).publishEvent(PatientChangeEvent.deleted(1L, PatientSummary.of(patient)));
     }
+
     @Test
     void deletePatientByIdWithNotExistingPatientShouldThrowPatientNotFoundException() {
         // Given
         Long id = 5L;
-        when(patientRepository.findById(anyLong())).thenReturn(Optional.empty());
+        when(patientCache.getById(anyLong())).thenReturn(Optional.empty());
+        when(patientRepository.findSummaryById(anyLong())).thenReturn(Optional.empty());
         assertThatThrownBy(() -> patientService.deletePatientById(5L))
                 .isInstanceOf(PatientNotFoundException.class)
                 .hasMessageContaining("Patient with id:{%d} doesn't exist in DB!".formatted(id));
+        verify(patientRepository, never()).deletePatientById(anyLong());
     }
 
-}
\ No newline at end of file
+    @Test
+    void deletePatientByIdDeletedConcurrentlyShouldThrowPatientNotFoundException() {
+        // Given
+        when(patientCache.getById(5L)).thenReturn(Optional.empty());
+        when(patientRepository.findSummaryById(5L)).thenReturn(Optional.of(new PatientSummary(5L, "LastName", "FirstName", LocalDate.of(2023, 4, 15), "M")));
+        when(patientRepository.deletePatientById(5L)).thenReturn(0);
+
+        // Then
+        assertThatThrownBy(() -> patientService.deletePatientById(5L)).isInstanceOf(PatientNotFoundException.class);
+        verify(eventPublisher, never()).publishEvent(any(PatientChangeEvent.class));
+    }
+
+    private static List<Patient> getConcurrently(int threads, Callable<Patient> call) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Patient>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(call));
+            }
+            List<Patient> results = new ArrayList<>();
+            for (Future<Patient> future : futures) {
+                results.add(future.get(30, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static DataIntegrityViolationException lastNameViolation() {
+        return new DataIntegrityViolationException("could not execute statement",
+                new ConstraintViolationException("Duplicate entry", new SQLException(), "patients." + Patient.LAST_NAME_CONSTRAINT));
+    }
+}